@@ -0,0 +1,114 @@
+package game;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class keeps the flash effects playing on a Board (completed lines
+ * flashing before they go, the whole stack flashing at game over).
+ *
+ * An effect is nothing more than a start time, a length and a flash rate
+ * for a range of rows: the game adds it and carries on, and the display
+ * works out whether each row is flashed on at the moment it paints.  So
+ * nothing ever has to wait for an animation to finish.
+ *
+ * Effects are added by the game's thread and read by the display's, so
+ * every method is synchronized (they are all short).
+ *
+ */
+
+public class AnimationTimeline {
+
+    /* Most effects that can play at once: more than enough for four lines and a game over */
+    private static final int MAX_EFFECTS = 16;
+
+    /* Each effect: the rows it covers, when it starts, how long it lasts and how fast it flashes */
+    private int[] firstRow_ = new int[MAX_EFFECTS];
+    private int[] lastRow_ = new int[MAX_EFFECTS];
+    private long[] start_ = new long[MAX_EFFECTS];
+    private long[] end_ = new long[MAX_EFFECTS];
+    private long[] period_ = new long[MAX_EFFECTS];
+
+    /* Number of effects held */
+    private int numEffects_;
+
+
+    /** METHODS **/
+
+    /*
+     * Flash rows firstRow -> lastRow (inclusive) from System.nanoTime() 'start' for 'duration'
+     * nanoseconds, switching on and off every 'period' nanoseconds.  If the timeline is full,
+     * the effect that finishes first makes way.
+     */
+    public synchronized void flashRows(int firstRow, int lastRow, long start, long duration, long period) {
+
+        int slot = numEffects_;
+
+        if (numEffects_ == MAX_EFFECTS) {
+            slot = 0;
+            for (int eachEffect = 1; eachEffect < numEffects_; eachEffect++)
+                if (end_[eachEffect] < end_[slot]) slot = eachEffect;
+        } else {
+            numEffects_++;
+        }
+
+        firstRow_[slot] = firstRow;
+        lastRow_[slot] = lastRow;
+        start_[slot] = start;
+        end_[slot] = start + duration;
+        period_[slot] = Math.max(period, 1);
+
+    }
+
+
+    /* Check whether a row is flashed on (drawn white) at the given time */
+    public synchronized boolean isFlashedOn(int row, long now) {
+
+        for (int eachEffect = 0; eachEffect < numEffects_; eachEffect++) {
+
+            if (row < firstRow_[eachEffect] || row > lastRow_[eachEffect]) continue;
+            if (now < start_[eachEffect] || now >= end_[eachEffect]) continue;
+
+            /* On for the first period, off for the next, and so on */
+            if (((now - start_[eachEffect]) / period_[eachEffect] & 1) == 0) return true;
+
+        }
+
+        return false;
+
+    }
+
+
+    /* Check whether anything is still playing at the given time (and drop what has finished) */
+    public synchronized boolean isActive(long now) {
+
+        int kept = 0;
+
+        for (int eachEffect = 0; eachEffect < numEffects_; eachEffect++) {
+
+            if (end_[eachEffect] <= now) continue;
+
+            firstRow_[kept] = firstRow_[eachEffect];
+            lastRow_[kept] = lastRow_[eachEffect];
+            start_[kept] = start_[eachEffect];
+            end_[kept] = end_[eachEffect];
+            period_[kept] = period_[eachEffect];
+            kept++;
+
+        }
+
+        numEffects_ = kept;
+
+        return numEffects_ > 0;
+
+    }
+
+
+    /* Drop every effect */
+    public synchronized void clear() {
+
+        numEffects_ = 0;
+
+    }
+
+}
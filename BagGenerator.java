@@ -0,0 +1,88 @@
+package game;
+
+import java.nio.ByteBuffer;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This PieceGenerator deals shapes from a shuffled bag holding one of
+ * each: once the bag is empty it is refilled and shuffled again.  Every
+ * shape turns up exactly once in each run of seven, so no shape is ever
+ * more than twelve pieces away.
+ *
+ */
+
+public class BagGenerator extends PieceGenerator {
+
+    /* The bag, and how many shapes are left in it */
+    private int[] bag_ = new int[NUM_SHAPES];
+    private int left_;
+
+
+    /** CONSTRUCTOR **/
+    public BagGenerator(long seed) {
+
+        super(seed);
+
+    }
+
+
+    /** METHODS **/
+
+    public int getType() {
+
+        return BAG;
+
+    }
+
+
+    protected int rollShape() {
+
+        if (left_ == 0) refillBag();
+
+        return bag_[--left_];
+
+    }
+
+
+    protected void resetShapes() {
+
+        left_ = 0;
+
+    }
+
+
+    protected void saveShapes(ByteBuffer snapshot) {
+
+        snapshot.put((byte) left_);
+        for (int eachShape = 0; eachShape < left_; eachShape++) snapshot.put((byte) bag_[eachShape]);
+
+    }
+
+
+    protected void restoreShapes(ByteBuffer snapshot) {
+
+        left_ = snapshot.get();
+        for (int eachShape = 0; eachShape < left_; eachShape++) bag_[eachShape] = snapshot.get();
+
+    }
+
+
+    /* Put one of each shape in the bag and shuffle it (Fisher-Yates) */
+    private void refillBag() {
+
+        for (int eachShape = 0; eachShape < NUM_SHAPES; eachShape++) bag_[eachShape] = eachShape;
+
+        for (int i = NUM_SHAPES - 1; i > 0; i--) {
+            int j = random_.nextInt(i + 1);
+            int swap = bag_[i];
+            bag_[i] = bag_[j];
+            bag_[j] = swap;
+        }
+
+        left_ = NUM_SHAPES;
+
+    }
+
+}
@@ -0,0 +1,533 @@
+package game;
+
+import java.util.Arrays;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class runs many boards side by side in lockstep, for training
+ * agents against the game's rules: each call to step() places one piece
+ * on every board.
+ *
+ * An action is a placement: the orientation (0 -> 3) times the board
+ * width, plus the left-hand column the piece should land in.  The piece
+ * is slid along the spawn row from where it came on and dropped straight
+ * down, as PlacementBot's straight drops go.  An action the piece can't
+ * get to counts as no input at all: the piece drops as it came on.
+ *
+ * The rules are the Game's, and come from the same places: pieces are
+ * dealt by a bag generator over the Game's spawn columns, only lines below
+ * Board.checkN + 1 count, and they are cleared by Board.dropRowsOver() (so
+ * rows above Board.checkN never move).  The reward is the score the lines
+ * earn, by ScoringMetrics.pointsFor(), and the game is over once the stack
+ * is Board.isToppedOut() (or the next piece has nowhere to come on).  A
+ * board whose game ends is started again at once on a fresh seed, so the
+ * observation returned for it is its new game.
+ *
+ * The boards are kept structure-of-arrays, in Board's packed layout: one
+ * long per row (so a board is at most 64 wide, and a full row is a single
+ * compare, as on a Board of that width), every board's rows end to end,
+ * and the same for the column tops, pieces and scores.
+ * The rewards, done flags and observations are written into arrays made
+ * once, so step() allocates nothing.  Each observation is the board's
+ * column heights, then its holes, the current shape, the next shape and
+ * the current piece's spawn column.
+ *
+ * A BatchEnvironment is not safe to share between threads: give each
+ * thread its own.
+ *
+ */
+
+public class BatchEnvironment {
+
+    /* Actions for each column: one per orientation */
+    public static final int NUM_ORIENTATIONS = 4;
+
+    /* Observation values after the column heights */
+    public static final int HOLES = 0;
+    public static final int CURRENT_SHAPE = 1;
+    public static final int NEXT_SHAPE = 2;
+    public static final int SPAWN_X = 3;
+    private static final int NUM_EXTRAS = 4;
+
+    /* Number of boards, and the size of each */
+    private final int numBoards_;
+    private final int width_, height_;
+    private final long fullRow_;
+
+    /* Every board's rows, [board * height + row], and column tops, [board * width + column] */
+    private final long[] rows_;
+    private final int[] columnTop_;
+
+    /* Lines completed by the piece being placed, bottom first */
+    private final int[] completedRows_ = new int[Shape.BLOCKS];
+
+    /* Each board's current and next shape (ordinals), the current piece's spawn column, and its pieces */
+    private final int[] currentShape_;
+    private final int[] nextShape_;
+    private final int[] spawnX_;
+    private final PieceGenerator[] generators_;
+
+    /* Each board's score and lines this game */
+    private final int[] score_;
+    private final int[] lines_;
+
+    /* What step() returns: the reward and done flag for each board, and each board's observation */
+    private final float[] rewards_;
+    private final boolean[] done_;
+    private final int[] observations_;
+    private final int observationSize_;
+
+    /* The seed games are dealt from, and the number of games started */
+    private final long seed_;
+    private long gamesStarted_;
+
+    /* Steps taken (pieces placed on each board) */
+    private long steps_;
+
+
+    /** CONSTRUCTOR **/
+    public BatchEnvironment(int numBoards, int boardWidth, int boardHeight, long seed) {
+
+        if (boardWidth > 64 || boardHeight <= Board.checkN + 2)
+            throw new IllegalArgumentException("Boards must be at most 64 wide and deeper than " + (Board.checkN + 2));
+
+        /* Every shape must fit on the board at both ends of the spawn range */
+        int spawnMaxX = Math.max(Game.SPAWN_LEFT, boardWidth - Game.SPAWN_RIGHT_MARGIN);
+        for (Shape eachShape : Shape.values()) {
+            if (Game.SPAWN_LEFT + eachShape.getMinX(0) < 0 || spawnMaxX + eachShape.getMaxX(0) >= boardWidth)
+                throw new IllegalArgumentException("Boards " + boardWidth + " wide are too narrow for pieces to come on");
+        }
+
+        numBoards_ = numBoards;
+        width_ = boardWidth;
+        height_ = boardHeight;
+        fullRow_ = (boardWidth == 64) ? -1L : (1L << boardWidth) - 1;
+
+        rows_ = new long[numBoards * boardHeight];
+        columnTop_ = new int[numBoards * boardWidth];
+
+        currentShape_ = new int[numBoards];
+        nextShape_ = new int[numBoards];
+        spawnX_ = new int[numBoards];
+        generators_ = new PieceGenerator[numBoards];
+
+        score_ = new int[numBoards];
+        lines_ = new int[numBoards];
+
+        observationSize_ = boardWidth + NUM_EXTRAS;
+        rewards_ = new float[numBoards];
+        done_ = new boolean[numBoards];
+        observations_ = new int[numBoards * observationSize_];
+
+        seed_ = seed;
+
+        for (int eachBoard = 0; eachBoard < numBoards; eachBoard++) {
+            generators_[eachBoard] = PieceGenerator.create(PieceGenerator.BAG, seed);
+            generators_[eachBoard].setSpawnRange(Game.SPAWN_LEFT, boardWidth - Game.SPAWN_RIGHT_MARGIN);
+        }
+
+        reset();
+
+    }
+
+
+    /** METHODS **/
+
+    /* Start a new game on every board: returns the observations */
+    public int[] reset() {
+
+        for (int eachBoard = 0; eachBoard < numBoards_; eachBoard++) {
+            startGame(eachBoard);
+            observe(eachBoard);
+        }
+
+        Arrays.fill(rewards_, 0);
+        Arrays.fill(done_, false);
+
+        return observations_;
+
+    }
+
+
+    /*
+     * Place one piece on every board, by the action for each (see getNumActions()).  Fills the
+     * rewards, done flags and observations, and returns the observations.
+     */
+    public int[] step(int[] actions) {
+
+        if (actions.length != numBoards_)
+            throw new IllegalArgumentException(actions.length + " actions for " + numBoards_ + " boards");
+
+        for (int eachBoard = 0; eachBoard < numBoards_; eachBoard++) {
+
+            int reward = place(eachBoard, actions[eachBoard]);
+
+            rewards_[eachBoard] = reward;
+            done_[eachBoard] = reward < 0;
+
+            /* Game over: start another straight away */
+            if (reward < 0) {
+                rewards_[eachBoard] = 0;
+                startGame(eachBoard);
+            }
+
+            observe(eachBoard);
+
+        }
+
+        steps_++;
+
+        return observations_;
+
+    }
+
+
+    /*
+     * Place a board's current piece by an action and deal the next: returns the points scored, or
+     * -1 if the game is over
+     */
+    private int place(int board, int action) {
+
+        Shape thisShape = Shape.fromOrdinal(currentShape_[board]);
+        int fromX = spawnX_[board];
+
+        int orientation = 0;
+        int baseX = fromX;
+        int restY = -1;
+
+        if (action >= 0 && action < getNumActions()) {
+            orientation = action / width_;
+            baseX = action % width_ - thisShape.getMinX(orientation);
+            restY = findDrop(board, thisShape, orientation, baseX);
+        }
+
+        /* Can't get there: it drops as it came on */
+        if (restY < 0) {
+            orientation = 0;
+            baseX = fromX;
+            if (collides(board, thisShape, orientation, baseX, Game.SPAWN_ROW)) return -1;
+            restY = dropY(board, thisShape, orientation, baseX);
+        }
+
+        int numLines = lockAndClear(board, thisShape, orientation, baseX, restY);
+
+        if (Board.isToppedOut(getMaxHeight(board), height_)) return -1;
+
+        int points = ScoringMetrics.pointsFor(numLines);
+        score_[board] += points;
+        lines_[board] += numLines;
+
+        dealNext(board);
+
+        return points;
+
+    }
+
+
+    /*
+     * Find where a piece lands if slid along the spawn row from its spawn column and dropped
+     * straight down, or -1 if something is in the way
+     */
+    private int findDrop(int board, Shape thisShape, int orientation, int baseX) {
+
+        int fromX = spawnX_[board];
+        int direction = (baseX < fromX) ? -1 : 1;
+
+        for (int eachX = fromX; ; eachX += direction) {
+            if (collides(board, thisShape, orientation, eachX, Game.SPAWN_ROW)) return -1;
+            if (eachX == baseX) break;
+        }
+
+        int restY = dropY(board, thisShape, orientation, baseX);
+
+        /* The column tops only tell where it lands if it starts above them */
+        return (restY < Game.SPAWN_ROW) ? -1 : restY;
+
+    }
+
+
+    /* Check whether a piece would overlap a block on a board or fall outside it */
+    private boolean collides(int board, Shape thisShape, int orientation, int baseX, int baseY) {
+
+        int left = baseX + thisShape.getMinX(orientation);
+        int top = baseY + thisShape.getMinY(orientation);
+
+        if (left < 0 || baseX + thisShape.getMaxX(orientation) >= width_ ||
+                top < 0 || baseY + thisShape.getMaxY(orientation) >= height_) return true;
+
+        int firstRow = board * height_ + top;
+        for (int row = 0; row < thisShape.getRowCount(orientation); row++)
+            if ((rows_[firstRow + row] & (thisShape.getRowMask(orientation, row) << left)) != 0) return true;
+
+        return false;
+
+    }
+
+
+    /* Get the base y a piece comes to rest at when dropped from above a board's stack, from the column tops */
+    private int dropY(int board, Shape thisShape, int orientation, int baseX) {
+
+        int firstColumn = board * width_;
+        int restY = Integer.MAX_VALUE;
+
+        for (int eachBlock = 0; eachBlock < Shape.BLOCKS; eachBlock++) {
+            int column = baseX + thisShape.getBlockX(orientation, eachBlock);
+            restY = Math.min(restY, columnTop_[firstColumn + column] - 1 - thisShape.getBlockY(orientation, eachBlock));
+        }
+
+        return restY;
+
+    }
+
+
+    /*
+     * Lock a piece into a board and clear the lines it completes, as Board does: only lines from
+     * Board.checkN + 2 down count, and Board.dropRowsOver() closes them up.  Returns the lines.
+     */
+    private int lockAndClear(int board, Shape thisShape, int orientation, int baseX, int baseY) {
+
+        int firstRow = board * height_;
+        int firstColumn = board * width_;
+
+        int left = baseX + thisShape.getMinX(orientation);
+        int top = baseY + thisShape.getMinY(orientation);
+        int numRows = thisShape.getRowCount(orientation);
+
+        for (int row = 0; row < numRows; row++) {
+
+            int yPos = top + row;
+            long bits = thisShape.getRowMask(orientation, row) << left;
+            rows_[firstRow + yPos] |= bits;
+
+            for (long eachBit = bits; eachBit != 0; eachBit &= eachBit - 1) {
+                int column = firstColumn + Long.numberOfTrailingZeros(eachBit);
+                if (yPos < columnTop_[column]) columnTop_[column] = yPos;
+            }
+
+        }
+
+        /* Only the rows the piece covers can have been completed: list them bottom first */
+        int numLines = 0;
+        for (int yPos = top + numRows - 1; yPos >= Math.max(top, Board.checkN + 2); yPos--)
+            if (rows_[firstRow + yPos] == fullRow_) completedRows_[numLines++] = yPos;
+
+        if (numLines == 0) return 0;
+
+        Board.dropRowsOver(rows_, firstRow, 1, Board.checkN, completedRows_, numLines);
+        Arrays.fill(rows_, firstRow + Board.checkN, firstRow + Board.checkN + numLines, 0L);
+
+        findColumnTops(board);
+
+        return numLines;
+
+    }
+
+
+    /* Work out the top block of every column of a board, from the top down */
+    private void findColumnTops(int board) {
+
+        int firstRow = board * height_;
+        int firstColumn = board * width_;
+
+        Arrays.fill(columnTop_, firstColumn, firstColumn + width_, height_);
+
+        long seen = 0;
+
+        for (int eachRow = 0; eachRow < height_ && seen != fullRow_; eachRow++) {
+
+            long newColumns = rows_[firstRow + eachRow] & ~seen;
+
+            for (long eachBit = newColumns; eachBit != 0; eachBit &= eachBit - 1)
+                columnTop_[firstColumn + Long.numberOfTrailingZeros(eachBit)] = eachRow;
+
+            seen |= newColumns;
+
+        }
+
+    }
+
+
+    /* Get the height of a board's tallest column */
+    private int getMaxHeight(int board) {
+
+        int firstColumn = board * width_;
+        int highest = height_;
+
+        for (int eachColumn = 0; eachColumn < width_; eachColumn++)
+            highest = Math.min(highest, columnTop_[firstColumn + eachColumn]);
+
+        return height_ - highest;
+
+    }
+
+
+    /* Clear a board and start a new game on it, dealt from the next seed */
+    private void startGame(int board) {
+
+        Arrays.fill(rows_, board * height_, (board + 1) * height_, 0L);
+        Arrays.fill(columnTop_, board * width_, (board + 1) * width_, height_);
+
+        score_[board] = 0;
+        lines_[board] = 0;
+
+        generators_[board].setSeed(seed_ + gamesStarted_++);
+        dealNext(board);
+
+    }
+
+
+    /* Deal a board its next piece, as Game does: the shape and spawn column, then the shape after it */
+    private void dealNext(int board) {
+
+        PieceGenerator generator = generators_[board];
+
+        currentShape_[board] = generator.peekShape(0).ordinal();
+        spawnX_[board] = generator.peekSpawnX(0);
+        generator.advance();
+
+        nextShape_[board] = generator.peekShape(0).ordinal();
+
+    }
+
+
+    /* Write a board's observation */
+    private void observe(int board) {
+
+        int firstRow = board * height_;
+        int firstColumn = board * width_;
+        int observation = board * observationSize_;
+
+        for (int eachColumn = 0; eachColumn < width_; eachColumn++)
+            observations_[observation + eachColumn] = height_ - columnTop_[firstColumn + eachColumn];
+
+        /* Holes: empty cells with a block somewhere above them, one pass down the rows */
+        int holes = 0;
+        long covered = 0;
+
+        for (int eachRow = 0; eachRow < height_; eachRow++) {
+            long rowBits = rows_[firstRow + eachRow];
+            holes += Long.bitCount(covered & ~rowBits);
+            covered |= rowBits;
+        }
+
+        observations_[observation + width_ + HOLES] = holes;
+        observations_[observation + width_ + CURRENT_SHAPE] = currentShape_[board];
+        observations_[observation + width_ + NEXT_SHAPE] = nextShape_[board];
+        observations_[observation + width_ + SPAWN_X] = spawnX_[board];
+
+    }
+
+
+    /*
+     * Mark which actions place each board's current piece where asked (rather than dropping it as
+     * it came on): mask[board * getNumActions() + action]
+     */
+    public void getActionMask(boolean[] mask) {
+
+        int numActions = getNumActions();
+
+        for (int eachBoard = 0; eachBoard < numBoards_; eachBoard++) {
+
+            Shape thisShape = Shape.fromOrdinal(currentShape_[eachBoard]);
+
+            for (int action = 0; action < numActions; action++) {
+                int orientation = action / width_;
+                int baseX = action % width_ - thisShape.getMinX(orientation);
+                mask[eachBoard * numActions + action] = findDrop(eachBoard, thisShape, orientation, baseX) >= 0;
+            }
+
+        }
+
+    }
+
+
+    /* Get the rewards from the last step */
+    public float[] getRewards() {
+
+        return rewards_;
+
+    }
+
+
+    /* Get which boards' games ended on the last step (and have been started again) */
+    public boolean[] getDone() {
+
+        return done_;
+
+    }
+
+
+    /* Get the observations: getObservationSize() values for each board, end to end */
+    public int[] getObservations() {
+
+        return observations_;
+
+    }
+
+
+    /* Get every board's rows (bit n of a row is column n), [board * height + row]: not to be written to */
+    public long[] getRows() {
+
+        return rows_;
+
+    }
+
+
+    /* Get the number of values in each board's observation: the column heights, then HOLES -> SPAWN_X */
+    public int getObservationSize() {
+
+        return observationSize_;
+
+    }
+
+
+    /* Get the number of actions: an orientation and left-hand column for each */
+    public int getNumActions() {
+
+        return NUM_ORIENTATIONS * width_;
+
+    }
+
+
+    /* Get the number of boards */
+    public int getNumBoards() {
+
+        return numBoards_;
+
+    }
+
+
+    /* Get a board's score this game */
+    public int getScore(int board) {
+
+        return score_[board];
+
+    }
+
+
+    /* Get a board's lines this game */
+    public int getLines(int board) {
+
+        return lines_[board];
+
+    }
+
+
+    /* Get the number of games started, over every board */
+    public long getGamesStarted() {
+
+        return gamesStarted_;
+
+    }
+
+
+    /* Get the number of steps taken */
+    public long getSteps() {
+
+        return steps_;
+
+    }
+
+}
@@ -0,0 +1,486 @@
+package game;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class is a bot that looks further ahead than PlacementBot, with a
+ * beam search.  It steers its pieces just as PlacementBot does; only the
+ * choice of placement differs.
+ *
+ * The search goes one piece deeper at a time: the current piece, then the
+ * next piece, then pieces drawn at random (the same draws for every board
+ * at that depth, so their scores compare).  At each depth every placement
+ * is tried on every board in the beam, and only the best beamWidth boards
+ * reached (scored by a BoardEvaluator, counting the lines cleared on the
+ * way) are kept for the next depth.  The answer is the first placement on
+ * the way to the best board at the deepest depth finished, so the search
+ * can stop whenever the time budget runs out: a depth left unfinished is
+ * simply thrown away.
+ *
+ * The same board is often reached by placing pieces in a different order.
+ * A bounded transposition table, keyed on the board's Zobrist hash and the
+ * depth, drops a board reached again with no better score before it is
+ * offered to the beam.  The beam being filled keeps its own index of the
+ * boards in it, so a board reached again with a better score takes the
+ * place of the one already there: each board is only carried forward once.
+ *
+ * The search runs on the calling thread (so many bots can run side by
+ * side on a GameHost), and never allocates beyond the boards it makes.
+ *
+ */
+
+public class BeamSearchBot extends PlacementBot {
+
+    /* Defaults: boards kept at each depth, and transposition table entries */
+    public static final int DEFAULT_BEAM_WIDTH = 32;
+    public static final int DEFAULT_TABLE_SIZE = 1 << 16;
+
+    /* Deepest the search ever goes */
+    public static final int MAX_DEPTH = 12;
+
+    /* Number of shapes a random draw picks from */
+    private static final int NUM_SHAPES = Shape.values().length;
+
+    /* Keys XORed into a board's hash for each depth, so the same board at two depths are told apart */
+    private static final long[] DEPTH_KEYS = new long[MAX_DEPTH + 1];
+
+    static {
+        for (int eachDepth = 0; eachDepth <= MAX_DEPTH; eachDepth++)
+            DEPTH_KEYS[eachDepth] = Xoshiro256.splitMix64(0x3C6EF372FE94F82BL + eachDepth * 0x9E3779B97F4A7C15L);
+    }
+
+    /* Boards kept at each depth */
+    private final int beamWidth_;
+
+    /* The beam being expanded, and the beam being filled (a min-heap on score, so the worst is on top) */
+    private ImmutableBoard[] beamBoards_, heapBoards_;
+    private int[] beamFirst_, heapFirst_;
+    private int[] beamLines_, heapLines_;
+    private double[] beamScores_, heapScores_;
+    private int beamSize_, heapSize_;
+
+    /* Hash of each board in the heap, and an index from hash to heap slot (linear probing, slot + 1, 0 for empty) */
+    private long[] heapKeys_;
+    private int[] heapIndex_;
+    private int heapIndexMask_;
+
+    /* Boards seen at each depth this decision */
+    private final TranspositionTable table_;
+
+    /* Draws the pieces after the next one */
+    private final Xoshiro256 random_;
+
+    /* Placements of the piece being tried on a board */
+    private int[] placements_ = new int[MAX_PLACEMENTS];
+
+    /* Boards made, boards dropped as already seen, and depths reached */
+    private long nodes_;
+    private long tableHits_;
+    private long searchTime_;
+    private int lastDepth_;
+    private long totalDepth_;
+    private long searches_;
+
+
+    /** CONSTRUCTOR **/
+    public BeamSearchBot() {
+
+        this(new BoardEvaluator(), DEFAULT_BEAM_WIDTH, DEFAULT_TABLE_SIZE, 1L);
+
+    }
+
+
+    /** CONSTRUCTOR: the seed decides which pieces are drawn beyond the next one **/
+    public BeamSearchBot(BoardEvaluator thisEvaluator, int beamWidth, int tableSize, long seed) {
+
+        super(thisEvaluator, ForkJoinPool.commonPool());
+
+        beamWidth_ = Math.max(beamWidth, 1);
+
+        beamBoards_ = new ImmutableBoard[beamWidth_];
+        heapBoards_ = new ImmutableBoard[beamWidth_];
+        beamFirst_ = new int[beamWidth_];
+        heapFirst_ = new int[beamWidth_];
+        beamLines_ = new int[beamWidth_];
+        heapLines_ = new int[beamWidth_];
+        beamScores_ = new double[beamWidth_];
+        heapScores_ = new double[beamWidth_];
+
+        heapKeys_ = new long[beamWidth_];
+        int indexSize = Integer.highestOneBit(Math.max(2 * beamWidth_ - 1, 1)) << 1;
+        heapIndex_ = new int[indexSize];
+        heapIndexMask_ = indexSize - 1;
+
+        table_ = new TranspositionTable(tableSize);
+        random_ = new Xoshiro256(seed);
+
+    }
+
+
+    /** METHODS **/
+
+    /* Choose a placement by beam search, going deeper until the time budget is spent */
+    public int choosePlacement(ImmutableBoard thisBoard, Shape thisShape, int fromX, int fromY, Shape nextShape,
+            int nextFromX) {
+
+        long startTime = System.nanoTime();
+        long deadline = startTime + getTimeBudget();
+        long startNodes = nodes_;
+
+        BoardEvaluator evaluator = getEvaluator();
+        table_.newSearch();
+
+        /* The root: one board, no placement made yet */
+        beamBoards_[0] = thisBoard;
+        beamFirst_[0] = NO_PLACEMENT;
+        beamLines_[0] = 0;
+        beamSize_ = 1;
+
+        int bestFirst = NO_PLACEMENT;
+        int depthReached = 0;
+
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+
+            /* The current piece, the next one, then a random draw */
+            Shape pieceShape = (depth == 1) ? thisShape : (depth == 2 && nextShape != null) ? nextShape
+                    : Shape.fromOrdinal(random_.nextInt(NUM_SHAPES));
+            int pieceX = (depth == 1) ? fromX : nextFromX;
+            int pieceY = (depth == 1) ? fromY : Game.SPAWN_ROW;
+
+            if (!expand(evaluator, depth, pieceShape, pieceX, pieceY, deadline)) break;
+
+            /* Every board lost: keep the answer from the depth before */
+            if (heapSize_ == 0) break;
+
+            swapBeams();
+            depthReached = depth;
+            bestFirst = beamFirst_[bestInBeam()];
+
+        }
+
+        /* Nothing finished in time (or every placement loses): take any placement there is */
+        if (bestFirst == NO_PLACEMENT && findReachable(thisBoard, thisShape, fromX, fromY, placements_) > 0)
+            bestFirst = placements_[0];
+
+        /* Let go of the boards held */
+        Arrays.fill(beamBoards_, null);
+        Arrays.fill(heapBoards_, null);
+
+        lastDepth_ = depthReached;
+        totalDepth_ += depthReached;
+        searches_++;
+        searchTime_ += System.nanoTime() - startTime;
+
+        recordDecision(startTime, nodes_ - startNodes);
+
+        return bestFirst;
+
+    }
+
+
+    /*
+     * Try every placement of a piece on every board in the beam, keeping the best boards in the
+     * heap.  Returns false if the deadline passed first.
+     */
+    private boolean expand(BoardEvaluator evaluator, int depth, Shape pieceShape, int pieceX, int pieceY,
+            long deadline) {
+
+        heapSize_ = 0;
+        Arrays.fill(heapIndex_, 0);
+
+        for (int eachBoard = 0; eachBoard < beamSize_; eachBoard++) {
+
+            if (System.nanoTime() - deadline > 0) return false;
+
+            ImmutableBoard parent = beamBoards_[eachBoard];
+            int numPlacements = findReachable(parent, pieceShape, pieceX, pieceY, placements_);
+
+            for (int eachPlacement = 0; eachPlacement < numPlacements; eachPlacement++) {
+
+                int placement = placements_[eachPlacement];
+                ImmutableBoard child = parent.place(pieceShape, placementOrientation(placement), placementX(placement),
+                        placementY(placement));
+                nodes_++;
+
+                if (child.isToppedOut()) continue;
+
+                int lines = beamLines_[eachBoard] + child.getLinesCleared();
+                double score = evaluator.evaluate(child, lines);
+
+                /* Reached already at this depth, at least as well */
+                if (!table_.offer(child.getHash() ^ DEPTH_KEYS[depth], score)) {
+                    tableHits_++;
+                    continue;
+                }
+
+                offerToHeap(child, child.getHash(), (depth == 1) ? placement : beamFirst_[eachBoard], lines, score);
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+
+    /*
+     * Keep a board if it is among the best beamWidth found so far at this depth.  If the same
+     * board (by hash) is already in the heap, the better of the two is kept, in its place.
+     */
+    private void offerToHeap(ImmutableBoard thisBoard, long key, int first, int lines, double score) {
+
+        int slot = findInHeap(key);
+
+        if (slot >= 0) {
+
+            /* Already in: a better score takes its place, and sinks towards the better boards */
+            if (score <= heapScores_[slot]) return;
+            removeFromHeapIndex(key);
+            slot = siftDown(slot, score);
+
+        } else if (heapSize_ < beamWidth_) {
+
+            /* Room to spare: add at the bottom and sift up */
+            slot = heapSize_++;
+            while (slot > 0 && heapScores_[(slot - 1) >>> 1] > score) {
+                moveHeapEntry((slot - 1) >>> 1, slot);
+                slot = (slot - 1) >>> 1;
+            }
+
+        } else {
+
+            /* Full: only better than the worst gets in, replacing it and sifting down */
+            if (score <= heapScores_[0]) return;
+            removeFromHeapIndex(heapKeys_[0]);
+            slot = siftDown(0, score);
+
+        }
+
+        heapBoards_[slot] = thisBoard;
+        heapKeys_[slot] = key;
+        heapFirst_[slot] = first;
+        heapLines_[slot] = lines;
+        heapScores_[slot] = score;
+
+        int indexSlot = (int) key & heapIndexMask_;
+        while (heapIndex_[indexSlot] != 0) indexSlot = (indexSlot + 1) & heapIndexMask_;
+        heapIndex_[indexSlot] = slot + 1;
+
+    }
+
+
+    /* Sift a gap in the heap down to where an entry with the given score belongs: returns the slot */
+    private int siftDown(int slot, double score) {
+
+        while (true) {
+            int child = 2 * slot + 1;
+            if (child >= heapSize_) break;
+            if (child + 1 < heapSize_ && heapScores_[child + 1] < heapScores_[child]) child++;
+            if (heapScores_[child] >= score) break;
+            moveHeapEntry(child, slot);
+            slot = child;
+        }
+
+        return slot;
+
+    }
+
+
+    /* Move a heap entry from one slot to another (over a gap), keeping the index pointing at it */
+    private void moveHeapEntry(int from, int to) {
+
+        int indexSlot = findHeapIndex(heapKeys_[from]);
+        heapIndex_[indexSlot] = to + 1;
+
+        heapBoards_[to] = heapBoards_[from];
+        heapKeys_[to] = heapKeys_[from];
+        heapFirst_[to] = heapFirst_[from];
+        heapLines_[to] = heapLines_[from];
+        heapScores_[to] = heapScores_[from];
+
+    }
+
+
+    /* Find the heap slot of the board with the given hash, or -1 */
+    private int findInHeap(long key) {
+
+        int indexSlot = findHeapIndex(key);
+        return (indexSlot < 0) ? -1 : heapIndex_[indexSlot] - 1;
+
+    }
+
+
+    /* Find the index slot for a hash, or -1 */
+    private int findHeapIndex(long key) {
+
+        for (int indexSlot = (int) key & heapIndexMask_; heapIndex_[indexSlot] != 0;
+                indexSlot = (indexSlot + 1) & heapIndexMask_)
+            if (heapKeys_[heapIndex_[indexSlot] - 1] == key) return indexSlot;
+
+        return -1;
+
+    }
+
+
+    /* Take a hash out of the index, shifting back any entries after it that probed past it */
+    private void removeFromHeapIndex(long key) {
+
+        int gap = findHeapIndex(key);
+        int next = (gap + 1) & heapIndexMask_;
+
+        while (heapIndex_[next] != 0) {
+
+            int wants = (int) heapKeys_[heapIndex_[next] - 1] & heapIndexMask_;
+
+            /* Move it back if its home isn't between the gap and where it is now */
+            if (((next - wants) & heapIndexMask_) >= ((next - gap) & heapIndexMask_)) {
+                heapIndex_[gap] = heapIndex_[next];
+                gap = next;
+            }
+
+            next = (next + 1) & heapIndexMask_;
+
+        }
+
+        heapIndex_[gap] = 0;
+
+    }
+
+
+    /* The heap just filled becomes the beam to expand */
+    private void swapBeams() {
+
+        ImmutableBoard[] boards = beamBoards_;
+        beamBoards_ = heapBoards_;
+        heapBoards_ = boards;
+
+        int[] first = beamFirst_;
+        beamFirst_ = heapFirst_;
+        heapFirst_ = first;
+
+        int[] lines = beamLines_;
+        beamLines_ = heapLines_;
+        heapLines_ = lines;
+
+        double[] scores = beamScores_;
+        beamScores_ = heapScores_;
+        heapScores_ = scores;
+
+        beamSize_ = heapSize_;
+        heapSize_ = 0;
+
+    }
+
+
+    /* Find the best board in the beam */
+    private int bestInBeam() {
+
+        int best = 0;
+        for (int eachBoard = 1; eachBoard < beamSize_; eachBoard++)
+            if (beamScores_[eachBoard] > beamScores_[best]) best = eachBoard;
+
+        return best;
+
+    }
+
+
+    /*
+     * A fixed size table of the boards reached in the current search, and the best score each
+     * was reached with.  Each key has one slot, and a new key simply takes it over, so the table
+     * never grows; entries left from earlier searches are told apart by a search number rather
+     * than cleared.
+     */
+    private static class TranspositionTable {
+
+        private final long[] keys_;
+        private final double[] scores_;
+        private final int[] searches_;
+        private final int mask_;
+        private int search_;
+
+        TranspositionTable(int capacity) {
+
+            int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+
+            keys_ = new long[size];
+            scores_ = new double[size];
+            searches_ = new int[size];
+            mask_ = size - 1;
+
+        }
+
+        /* Start a new search: everything in the table is forgotten */
+        void newSearch() {
+
+            search_++;
+
+        }
+
+        /* Note a board reached with a score: returns false if it was reached before with one as good */
+        boolean offer(long key, double score) {
+
+            int slot = (int) (key ^ (key >>> 32)) & mask_;
+
+            if (searches_[slot] == search_ && keys_[slot] == key) {
+                if (scores_[slot] >= score) return false;
+                scores_[slot] = score;
+                return true;
+            }
+
+            keys_[slot] = key;
+            scores_[slot] = score;
+            searches_[slot] = search_;
+            return true;
+
+        }
+
+    }
+
+
+    /** STATISTICS **/
+
+    /* Get the number of boards made by the search */
+    public long getNodes() {
+
+        return nodes_;
+
+    }
+
+
+    /* Get the boards made per second of searching */
+    public double getNodesPerSecond() {
+
+        return (searchTime_ == 0) ? 0 : nodes_ * 1e9 / searchTime_;
+
+    }
+
+
+    /* Get the number of boards dropped because they had been reached already */
+    public long getTableHits() {
+
+        return tableHits_;
+
+    }
+
+
+    /* Get the depth the last search finished */
+    public int getLastDepth() {
+
+        return lastDepth_;
+
+    }
+
+
+    /* Get the mean depth searches finished */
+    public double getMeanDepth() {
+
+        return (searches_ == 0) ? 0 : (double) totalDepth_ / searches_;
+
+    }
+
+}
@@ -4,7 +4,9 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import javax.swing.Timer;
 
@@ -35,9 +37,59 @@ public class Board {
      */
     public static int checkN = 5;
 
-    /* Array for all available positions on the board */
+    /* Array for all available positions on the board (views onto the packed rows below) */
     private BoardPosition[][] positions_;
 
+    /*
+     * Occupancy for the board, packed one bit per cell.  Each row takes
+     * wordsPerRow_ longs (one long for boards up to 64 wide), with bit (x & 63)
+     * of word (x >>> 6) set when column x holds a block.
+     */
+    private long[] rows_;
+    private int wordsPerRow_;
+
+    /* Shape of the block on each cell (Board.EMPTY_CELL if none), indexed [y * width + x] */
+    private byte[] cells_;
+
+    /* Entity occupying each cell, indexed [y * width + x] */
+    private Entity[] entities_;
+
+    /* Number of blocks on each row */
+    private int[] rowFill_;
+
+    /*
+     * Surface profile of the lodged stack, kept up to date as Tetrads lodge and lines clear.
+     * columnTop_ holds the row of the top lodged block in each column (height_ if empty).
+     */
+    private int[] columnTop_;
+    private int[] columnFill_;
+    private int lodgedBlocks_;
+    private int aggregateHeight_;
+    private int bumpiness_;
+    private int maxHeight_;
+
+    /* Read-only view of the profile */
+    private BoardProfile profile_;
+
+    /* Rows found to be completed on the current check, bottom first */
+    private int[] completedRows_;
+
+    /* Number of completed lines (listed in completedRows_) left on the board while they flash */
+    private int pendingLines_;
+
+    /* Zobrist keys for each cell, indexed [y * width + x], and the hash of every occupied cell */
+    private long[] cellKeys_;
+    private long cellHash_;
+
+    /* Cell values for the cells_ array */
+    public static final byte EMPTY_CELL = 0;
+    public static final byte OTHER_ENTITY = -1;
+
+    /* How fast completed lines flash, and how long (and how fast) the stack flashes at game over */
+    public static final long LINE_FLASH_PERIOD = 50000000L; // 50ms
+    public static final long GAME_OVER_FLASH = 800000000L; // 800ms
+    public static final long GAME_OVER_FLASH_PERIOD = 100000000L; // 100ms
+
     /**
      * Constructor for a standard board of m by n.
      */
@@ -49,6 +101,19 @@ public class Board {
         width_ = width;
         height_ = height;
 
+        wordsPerRow_ = (width_ + 63) >>> 6;
+        rows_ = new long[wordsPerRow_ * height_];
+        cells_ = new byte[width_ * height_];
+        entities_ = new Entity[width_ * height_];
+        completedRows_ = new int[height_];
+        rowFill_ = new int[height_];
+        cellKeys_ = Zobrist.cellKeys(width_, height_);
+
+        columnTop_ = new int[width_];
+        columnFill_ = new int[width_];
+        Arrays.fill(columnTop_, height_);
+        profile_ = new BoardProfile(this);
+
         positions_ = new BoardPosition[width_][height_];
 
         generatePositions(positions_);
@@ -98,10 +163,365 @@ public class Board {
 
         for (int xPos = 0; xPos < getWidth(); xPos++) {
             for (int yPos = 0; yPos < getHeight(); yPos++) {
-                thisBoard[xPos][yPos] = new BoardPosition(xPos, yPos);
+                thisBoard[xPos][yPos] = new BoardPosition(this, xPos, yPos);
+            }
+        }
+
+    }
+
+
+    /* Check whether the cell at (xPos, yPos) holds a block */
+    public boolean isOccupied(int xPos, int yPos) {
+
+        return (rows_[yPos * wordsPerRow_ + (xPos >>> 6)] & (1L << xPos)) != 0;
+
+    }
+
+
+    /* Set or clear the occupancy bit for the cell at (xPos, yPos) */
+    public void setOccupied(int xPos, int yPos, boolean setTo) {
+
+        int word = yPos * wordsPerRow_ + (xPos >>> 6);
+        boolean wasSet = (rows_[word] & (1L << xPos)) != 0;
+
+        /* Keep the fill count for the row in step with its bits */
+        if (setTo == wasSet) return;
+
+        cellHash_ ^= cellKeys_[yPos * width_ + xPos];
+
+        if (setTo) {
+            rows_[word] |= 1L << xPos;
+            rowFill_[yPos]++;
+        } else {
+            rows_[word] &= ~(1L << xPos);
+            rowFill_[yPos]--;
+        }
+
+    }
+
+
+    /* Access the entity on the cell at (xPos, yPos) */
+    public Entity accessEntity(int xPos, int yPos) {
+
+        return entities_[yPos * width_ + xPos];
+
+    }
+
+
+    /* Set the entity on the cell at (xPos, yPos), recording its shape for the cell */
+    public void setEntity(int xPos, int yPos, Entity setThis) {
+
+        int cell = yPos * width_ + xPos;
+
+        entities_[cell] = setThis;
+        cells_[cell] = cellValueFor(setThis);
+
+    }
+
+
+    /* Place a block belonging to an entity on the cell at (xPos, yPos) */
+    public void placeBlock(int xPos, int yPos, Entity setThis) {
+
+        setOccupied(xPos, yPos, true);
+        setEntity(xPos, yPos, setThis);
+
+    }
+
+
+    /* Remove the block from the cell at (xPos, yPos) */
+    public void clearBlock(int xPos, int yPos) {
+
+        setOccupied(xPos, yPos, false);
+        setEntity(xPos, yPos, null);
+
+    }
+
+
+    /* Get the shape of the block on the cell at (xPos, yPos): null if empty or not a Tetrad block */
+    public Shape accessCellShape(int xPos, int yPos) {
+
+        byte cellValue = cells_[yPos * width_ + xPos];
+
+        if (cellValue <= EMPTY_CELL) return null;
+        return Shape.fromOrdinal(cellValue - 1);
+
+    }
+
+
+    /* Get a word of packed occupancy for a row: word 0 holds columns 0 -> 63 */
+    public long accessRowWord(int yPos, int word) {
+
+        return rows_[yPos * wordsPerRow_ + word];
+
+    }
+
+
+    /*
+     * Check whether a shape in the given orientation, with its base at (baseX, baseY), would
+     * overlap a block already on the board or fall outside it.  Each row of the shape is one
+     * shift-and-AND of its row mask against the packed row.
+     */
+    public boolean collides(Shape thisShape, int orientation, int baseX, int baseY) {
+
+        int left = baseX + thisShape.getMinX(orientation);
+        int top = baseY + thisShape.getMinY(orientation);
+
+        /* Out of bounds counts as a collision */
+        if (left < 0 || baseX + thisShape.getMaxX(orientation) >= width_ ||
+                top < 0 || baseY + thisShape.getMaxY(orientation) >= height_) return true;
+
+        int word = left >>> 6;
+        int shift = left & 63;
+
+        for (int row = 0; row < thisShape.getRowCount(orientation); row++) {
+
+            long mask = thisShape.getRowMask(orientation, row);
+            int base = (top + row) * wordsPerRow_ + word;
+
+            if ((rows_[base] & (mask << shift)) != 0) return true;
+
+            /* On wide boards the mask can run over into the next word */
+            if (shift != 0 && word + 1 < wordsPerRow_ && (rows_[base + 1] & (mask >>> (64 - shift))) != 0) return true;
+
+        }
+
+        return false;
+
+    }
+
+
+    /* Get the number of longs used to pack each row */
+    public int getWordsPerRow() {
+
+        return wordsPerRow_;
+
+    }
+
+
+    /* Check whether every cell in a row holds a block */
+    public boolean isRowFull(int yPos) {
+
+        return rowFill_[yPos] == width_;
+
+    }
+
+
+    /* Check whether a row has no blocks in it */
+    public boolean isRowEmpty(int yPos) {
+
+        return rowFill_[yPos] == 0;
+
+    }
+
+
+    /* Get the number of blocks on a row */
+    public int getRowFill(int yPos) {
+
+        return rowFill_[yPos];
+
+    }
+
+
+    /* Get the read-only profile of the lodged stack */
+    public BoardProfile getProfile() {
+
+        return profile_;
+
+    }
+
+
+    /*
+     * Get the Zobrist hash of the game state on this board: every occupied cell, the falling
+     * piece (while it is still falling) and the next piece.  Equal states always have equal
+     * hashes, in any run.
+     */
+    public long getZobristHash() {
+
+        long hash = cellHash_;
+
+        if (owner_ == null) return hash;
+
+        Tetrad falling = owner_.getCurrentPiece();
+        if (falling != null && !falling.lodged_ && falling.getTopRow() >= 0)
+            hash ^= Zobrist.pieceKey(falling.getShape(), falling.getOrientation(), falling.getBaseX(), falling.getBaseY());
+
+        if (owner_.getNextPiece() != null) hash ^= Zobrist.nextPieceKey(owner_.getNextPiece());
+
+        return hash;
+
+    }
+
+
+    /* Get the Zobrist hash of the occupied cells alone (the falling piece's blocks included) */
+    public long getCellHash() {
+
+        return cellHash_;
+
+    }
+
+
+    /* XOR together the cell keys of every block on rows firstRow -> lastRow (inclusive) */
+    private long hashRows(int firstRow, int lastRow) {
+
+        long hash = 0;
+
+        for (int eachRow = firstRow; eachRow <= lastRow; eachRow++)
+            for (int eachWord = 0; eachWord < wordsPerRow_; eachWord++)
+                hash ^= Zobrist.hashRow(cellKeys_, eachRow * width_ + (eachWord << 6), rows_[eachRow * wordsPerRow_ + eachWord]);
+
+        return hash;
+
+    }
+
+
+    /* Hand the blocks of a Tetrad that has just lodged over to the stack profile */
+    public void lodgeTetrad(Tetrad thisTet) {
+
+        for (BoardPosition p: thisTet.getPositions()) {
+
+            /* Positions not yet on the board (-1, -1) have nothing to add */
+            if (p.getThisPosition().x < 0) continue;
+
+            addLodgedBlock(p.getThisPosition().x, p.getThisPosition().y);
+
+        }
+
+        /* Let the game know, so it can clear lines and bring on the next piece */
+        if (owner_ != null) owner_.pieceLodged(thisTet);
+
+    }
+
+
+    /* Add a single lodged block to the stack profile */
+    private void addLodgedBlock(int xPos, int yPos) {
+
+        columnFill_[xPos]++;
+        lodgedBlocks_++;
+
+        if (yPos < columnTop_[xPos]) setColumnTop(xPos, yPos);
+
+    }
+
+
+    /* Move the top of a column, keeping aggregate height, bumpiness and max height in step */
+    private void setColumnTop(int column, int newTop) {
+
+        int oldHeight = getColumnHeight(column);
+        int newHeight = height_ - newTop;
+
+        /* Take the old column out of the bumpiness, then put the new one in */
+        bumpiness_ -= neighbourDifference(column, oldHeight);
+        columnTop_[column] = newTop;
+        bumpiness_ += neighbourDifference(column, newHeight);
+
+        aggregateHeight_ += newHeight - oldHeight;
+
+        if (newHeight > maxHeight_) {
+            maxHeight_ = newHeight;
+        } else if (oldHeight == maxHeight_ && newHeight < oldHeight) {
+            maxHeight_ = 0;
+            for (int eachCol = 0; eachCol < width_; eachCol++)
+                maxHeight_ = Math.max(maxHeight_, getColumnHeight(eachCol));
+        }
+
+    }
+
+
+    /* Sum of the height differences between a column of the given height and its neighbours */
+    private int neighbourDifference(int column, int columnHeight) {
+
+        int difference = 0;
+
+        if (column > 0) difference += Math.abs(columnHeight - getColumnHeight(column - 1));
+        if (column < width_ - 1) difference += Math.abs(columnHeight - getColumnHeight(column + 1));
+
+        return difference;
+
+    }
+
+
+    /* Bring the stack profile up to date after numLines lines have been removed */
+    private void updateProfileForClear(int numLines) {
+
+        lodgedBlocks_ -= numLines * width_;
+        aggregateHeight_ = 0;
+        maxHeight_ = 0;
+
+        for (int eachCol = 0; eachCol < width_; eachCol++) {
+
+            columnFill_[eachCol] -= numLines;
+
+            /*
+             * Everything above the old top was empty, so after the rows have dropped the
+             * new top can be no higher than numLines below it.  Rows above Board.checkN
+             * don't move.
+             */
+            int top = columnTop_[eachCol];
+
+            if (top >= Board.checkN) {
+                top += numLines;
+                while (top < height_ && !isOccupied(eachCol, top)) top++;
+                columnTop_[eachCol] = top;
             }
+
+            aggregateHeight_ += getColumnHeight(eachCol);
+            maxHeight_ = Math.max(maxHeight_, getColumnHeight(eachCol));
+
         }
 
+        bumpiness_ = 0;
+        for (int eachCol = 0; eachCol < width_ - 1; eachCol++)
+            bumpiness_ += Math.abs(getColumnHeight(eachCol) - getColumnHeight(eachCol + 1));
+
+    }
+
+
+    /* Profile values, read through BoardProfile */
+    int getColumnHeight(int column) {
+
+        return height_ - columnTop_[column];
+
+    }
+
+    int getColumnTop(int column) {
+
+        return columnTop_[column];
+
+    }
+
+    int getMaxHeight() {
+
+        return maxHeight_;
+
+    }
+
+    int getAggregateHeight() {
+
+        return aggregateHeight_;
+
+    }
+
+    int getHoles() {
+
+        /* Every cell from the top of a column down is either a lodged block or a hole */
+        return aggregateHeight_ - lodgedBlocks_;
+
+    }
+
+    int getBumpiness() {
+
+        return bumpiness_;
+
+    }
+
+
+    /* Work out the value stored in cells_ for an entity */
+    private byte cellValueFor(Entity thisEntity) {
+
+        if (thisEntity == null) return EMPTY_CELL;
+        if (thisEntity instanceof Tetrad) return (byte) (((Tetrad) thisEntity).getShape().ordinal() + 1);
+        return OTHER_ENTITY;
+
     }
 
 
@@ -116,10 +536,13 @@ public class Board {
     /* Review the Nth line of the board and exit if a block has lodged on it */
     public Boolean isGameEnded(int checkN) {
 
+        /* Nothing lodged as high as the line: no need to look at each cell */
+        if (!isToppedOut(getMaxHeight(), height_)) return false;
+
         for (int alongX = 0; alongX < width_; alongX++) {
-            if (positions_[alongX][Board.checkN].hasEntity()) {
-                if (positions_[alongX][Board.checkN].returnEntityHere() instanceof Tetrad) {
-                    Tetrad thisTet = (Tetrad) positions_[alongX][Board.checkN].returnEntityHere();
+            if (isOccupied(alongX, Board.checkN)) {
+                if (accessEntity(alongX, Board.checkN) instanceof Tetrad) {
+                    Tetrad thisTet = (Tetrad) accessEntity(alongX, Board.checkN);
                     if (checkIfLodgedBlock(thisTet)) return true;
                 }
             }
@@ -130,6 +553,14 @@ public class Board {
     }
 
 
+    /* Check whether a stack maxHeight high, on a board boardHeight high, reaches Board.checkN: the game is over */
+    public static boolean isToppedOut(int maxHeight, int boardHeight) {
+
+        return maxHeight >= boardHeight - Board.checkN;
+
+    }
+
+
     /* Check if a specific Tetrad is lodged above the top visible line on screen -> if so, flash all rows */
     private boolean checkIfLodgedBlock(Tetrad thisTet) {
 
@@ -138,10 +569,8 @@ public class Board {
             // System.out.println("Game over -> There's something breaking the bounds!");
             owner_.stopTicking();
 
-            for (int rowNum = Board.checkN + 1; rowNum < height_; rowNum++) {
-                /* Flash each line on the board */
-                flashBlocks(rowNum, 4);
-            }
+            /* Flash every visible line on the board: the display plays it out after the game ends */
+            flashBlocks(Board.checkN + 1, height_ - 1, GAME_OVER_FLASH, GAME_OVER_FLASH_PERIOD);
 
             endTheGame();
 
@@ -157,47 +586,60 @@ public class Board {
     /* End the game and display Game Over screen */
     private void endTheGame() {
 
-        owner_.setFlash(false);
-        owner_.accessDisplay().directAccessToDisplay().signalEnded();
-        owner_.accessDisplay().directAccessToDisplay().repaint();
+        owner_.signalGameOver();
+        owner_.fireBoardChanged();
         owner_.setInPlay(false);
 
     }
 
 
-    /* Try to flash blocks on a given row on the screen */
-    private void flashBlocks(int rowNum, int numFlashes) {
-        /* Flash all blocks on screen */
-        try {
+    /* Flash the blocks on rows firstRow -> lastRow for 'duration' nanoseconds: this returns straight away */
+    private void flashBlocks(int firstRow, int lastRow, long duration, long period) {
 
-            /* Switch twice for each flash (i.e. 2 times on, 2 times off == 4 switches == 2 flashes) */
-            for (int x = 0; x < numFlashes; x++) {
-                Thread.sleep(50); // 50ms wait time on thread
-                owner_.setFlashRow(rowNum); // Flash on this row
-                owner_.setFlash(!owner_.getFlash()); // Flip the value of flash for the blocks
-                owner_.accessDisplay().directAccessToDisplay().repaint();
-            }
+        /* Nothing to see in a headless game */
+        if (owner_ == null || owner_.isHeadless()) return;
+
+        owner_.getTimeline().flashRows(firstRow, lastRow, System.nanoTime(), duration, period);
 
-        } catch (InterruptedException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
     }
 
 
     /* Check all lines below bound to see if completed */
     public void checkForCompletedLines() {
 
-        /* Count the number of completed lines */
-        int completedLines = 0; /** Start with -1, as will always return true on first line */
-
         /* Start at the bottom and work up */
-        for (int rows = height_ - 1; rows > 6; rows--)
-            completedLines = checkEachLine(completedLines, rows);
+        checkForCompletedLines(Board.checkN + 2, height_ - 1);
 
-        /* Update the score */
-        if (completedLines > 0) 
-            owner_.getGameScore().multipleLinesCompleted(completedLines);
+    }
+
+
+    /*
+     * Check only the lines from topRow to bottomRow (inclusive) to see if completed.  When a
+     * Tetrad lodges, these are the only rows it can have filled.
+     */
+    public void checkForCompletedLines(int topRow, int bottomRow) {
+
+        /* Lines above the bound never count */
+        topRow = Math.max(topRow, Board.checkN + 2);
+        bottomRow = Math.min(bottomRow, height_ - 1);
+
+        int completedLines = findCompletedLines(topRow, bottomRow);
+
+        if (completedLines == 0) return;
+
+        /*
+         * With an entry delay, the lines stay on the board and flash until the Game calls
+         * removePendingLines().  Otherwise they go straight away.
+         */
+        if (owner_ != null && owner_.getEntryDelay() > 0) {
+            pendingLines_ = completedLines;
+            for (int eachLine = 0; eachLine < completedLines; eachLine++)
+                flashBlocks(completedRows_[eachLine], completedRows_[eachLine],
+                        owner_.getEntryDelay() * 1000000L, LINE_FLASH_PERIOD);
+            return;
+        }
+
+        removeCompletedLines(completedLines);
 
         /** Used to test whether or not row removal count is correct **/
         //        System.out.format("Removed %d rows.\n", completedLines);
@@ -206,106 +648,112 @@ public class Board {
     }
 
 
-    /* Check each line to see if it has been completed */
-    private int checkEachLine(int currentCompletedCount, int rows) {
+    /*
+     * Write the board to a snapshot: the packed rows, the shape on each cell, the row counts,
+     * the profile and any lines left flashing.  Which entity is on each cell is not kept.
+     */
+    void saveState(ByteBuffer snapshot) {
 
-        int checkAgain = rows;
-        int origRow = checkAgain;
+        for (int eachWord = 0; eachWord < rows_.length; eachWord++) snapshot.putLong(rows_[eachWord]);
+        snapshot.put(cells_);
+        for (int eachRow = 0; eachRow < height_; eachRow++) snapshot.putInt(rowFill_[eachRow]);
 
-        /* 
-         * While checking for completed lines continues to return this row number,
-         * keep checking it for completions.
-         */
-        while (checkAgain == rows) {
+        for (int eachColumn = 0; eachColumn < width_; eachColumn++) {
+            snapshot.putInt(columnTop_[eachColumn]);
+            snapshot.putInt(columnFill_[eachColumn]);
+        }
+        snapshot.putInt(lodgedBlocks_);
+        snapshot.putInt(aggregateHeight_);
+        snapshot.putInt(bumpiness_);
+        snapshot.putInt(maxHeight_);
 
-            /* Set original row to what we're checking again */
-            origRow = checkAgain;
+        snapshot.putInt(pendingLines_);
+        for (int eachLine = 0; eachLine < pendingLines_; eachLine++) snapshot.putInt(completedRows_[eachLine]);
+
+    }
 
-            /* Set checkAgain to be the output of lineCompleted(int) */
-            checkAgain = lineCompleted(rows);
 
-            /* If checkAgain returns the same number, increase number of removed lines */
-            if (checkAgain == origRow) currentCompletedCount++;
+    /*
+     * Take on the board written by saveState().  Every cell is left with no entity: lodged blocks
+     * don't need one, and the Game points the current piece's cells back at it.
+     */
+    void restoreState(ByteBuffer snapshot) {
 
+        for (int eachWord = 0; eachWord < rows_.length; eachWord++) rows_[eachWord] = snapshot.getLong();
+        snapshot.get(cells_);
+        for (int eachRow = 0; eachRow < height_; eachRow++) rowFill_[eachRow] = snapshot.getInt();
+        Arrays.fill(entities_, null);
+
+        for (int eachColumn = 0; eachColumn < width_; eachColumn++) {
+            columnTop_[eachColumn] = snapshot.getInt();
+            columnFill_[eachColumn] = snapshot.getInt();
         }
+        lodgedBlocks_ = snapshot.getInt();
+        aggregateHeight_ = snapshot.getInt();
+        bumpiness_ = snapshot.getInt();
+        maxHeight_ = snapshot.getInt();
+
+        pendingLines_ = snapshot.getInt();
+        for (int eachLine = 0; eachLine < pendingLines_; eachLine++) completedRows_[eachLine] = snapshot.getInt();
 
-        return currentCompletedCount;
+        cellHash_ = hashRows(0, height_ - 1);
 
     }
 
 
-    /* Check if a line has been completed - if completed, clear the line and move all other blocks ABOVE this line down a line */
-    public int lineCompleted(int rowNumber) {  // Board.checkN represents the bottom invisible row on the board
+    /* Get the number of bytes saveState() writes for a board this size (at most) */
+    int getStateSize() {
 
-        /* Set the row number for next run */
-        int nextRowCheck = rowNumber;
+        return rows_.length * 8 + cells_.length + height_ * 4 + width_ * 8 + 16 + 4 + height_ * 4;
 
-        /* 
-         * Check all the board positions in a row.  If there are no gaps, and each position
-         * holds a block, the line is completed 
-         */
+    }
 
-        int gapCnt = checkForGapsInLine(rowNumber);
-        
-        /* If the gapCnt == 0, remove the line */
-        if (gapCnt == 0) {
 
-            removeLineSequence(nextRowCheck, rowNumber);
+    /* Check whether completed lines are waiting on the board to be removed */
+    public boolean hasPendingLines() {
 
-        } else {
+        return pendingLines_ > 0;
 
-            /* Go to the next row up */
-            return nextRowCheck - 1;
+    }
 
-        }
 
+    /* Remove the completed lines left on the board while they flashed: returns the number removed */
+    public int removePendingLines() {
 
-        /* We have deleted this line, so we need to check it again */
-        return nextRowCheck;
+        int completedLines = pendingLines_;
+        pendingLines_ = 0;
 
-    }
+        if (completedLines > 0) removeCompletedLines(completedLines);
 
+        return completedLines;
     
-    /* Check for gaps in a specific line, in order to work out if it is completed */
-    private int checkForGapsInLine(int rowNumber) {
-        
-        int gapCnt = 0;
-
-        for (int eachCol = 0; eachCol < width_; eachCol++) {
-            if (!this.accessPosition(eachCol, rowNumber).hasEntity() &&
-                    !(this.accessPosition(eachCol, rowNumber).returnEntityHere() instanceof Tetrad)) {
-                gapCnt++;
-            }
-        }
-
-        return gapCnt;
-        
     }
     
-    
-    /* Consolidated sequence for removing a line from the board */
-    private void removeLineSequence(int nextRowCheck, int rowNumber) {
-        
-        animateLineRemoval(nextRowCheck);
-        clearLineFromBoard(rowNumber);
-        shiftRemainingBlocksDown(rowNumber);
-    
+
+    /* Find every completed line between topRow and bottomRow (inclusive), bottom first, into completedRows_ */
+    private int findCompletedLines(int topRow, int bottomRow) {
+
+        int completedLines = 0;
+
+        for (int rows = bottomRow; rows >= topRow; rows--)
+            if (isRowFull(rows)) completedRows_[completedLines++] = rows;
+
+        return completedLines;
+
     }
-    
 
-    /* Animate the flash for removing a line from the board */
-    private void animateLineRemoval(int nextRowCheck) {
 
-        /* First of all, stop the timers and fire the animation to flash the line */
-        owner_.tick.stop();
-        flashBlocks(nextRowCheck, 10);
+    /*
+     * Remove the first numLines lines listed in completedRows_ and drop the rows above in a
+     * single pass, then update the profile and the score.
+     */
+    private void removeCompletedLines(int numLines) {
 
-        /* Reset the flash values */
-        owner_.setFlashRow(0);
-        owner_.setFlash(false);
+        compactRows(numLines);
+        updateProfileForClear(numLines);
 
-        /* Restart the timer */
-        owner_.tick.start();
+        /* Update the score */
+        if (owner_ != null) owner_.getGameScore().multipleLinesCompleted(numLines);
 
     }
 
@@ -313,44 +761,87 @@ public class Board {
     /* Clear the blocks in this line from memory */
     private void clearLineFromBoard(int rowNumber) {
 
-        for (int eachCol = 0; eachCol < width_; eachCol++) {
+        Arrays.fill(rows_, rowNumber * wordsPerRow_, (rowNumber + 1) * wordsPerRow_, 0L);
+        Arrays.fill(cells_, rowNumber * width_, (rowNumber + 1) * width_, EMPTY_CELL);
+        Arrays.fill(entities_, rowNumber * width_, (rowNumber + 1) * width_, null);
+        rowFill_[rowNumber] = 0;
 
-            this.accessPosition(eachCol, rowNumber).setEntityHere(null);
-            this.accessPosition(eachCol, rowNumber).setHasEntity(false);
+    }
+
+
+    /*
+     * Remove the first numLines rows listed in completedRows_ (bottom first) and move the
+     * surviving rows down over them, in every array the board keeps row by row.
+     */
+    private void compactRows(int numLines) {
+
+        /* Take the rows that move (or go) out of the hash, and put them back in once they have moved */
+        int lowestLine = completedRows_[0];
+        cellHash_ ^= hashRows(Board.checkN, lowestLine);
+
+        dropRowsOver(rows_, 0, wordsPerRow_, Board.checkN, completedRows_, numLines);
+
+        /* The cells, their entities and the row counts move over the same runs */
+        for (int eachLine = 0; eachLine < numLines; eachLine++) {
+
+            int runBottom = completedRows_[eachLine] - 1;
+            int runTop = getRunTop(Board.checkN, completedRows_, eachLine, numLines);
+
+            if (runBottom >= runTop) moveRowsDown(runTop, runBottom, eachLine + 1);
 
         }
 
+        /* Null out the rows left empty at the top */
+        for (int rowNumber = Board.checkN; rowNumber < Board.checkN + numLines; rowNumber++)
+            clearLineFromBoard(rowNumber);
+
+        cellHash_ ^= hashRows(Board.checkN, lowestLine);
+
     }
 
 
-    /* Shift remaining blocks on the board down one place */
-    private void shiftRemainingBlocksDown(int rowNumber) {
+    /* Move rows topRow -> bottomRow of the cells, entities and row counts down the board by shift rows, as a block */
+    private void moveRowsDown(int topRow, int bottomRow, int shift) {
 
-        /* Now, move all other blocks down 1 */
-        while (rowNumber > Board.checkN) { /** NEED TO ABSTRACT TOP LEVEL VALUE **/
+        int numRows = bottomRow - topRow + 1;
 
-            /* Go to the row above this one */
-            rowNumber--;
+        System.arraycopy(cells_, topRow * width_, cells_, (topRow + shift) * width_, numRows * width_);
+        System.arraycopy(entities_, topRow * width_, entities_, (topRow + shift) * width_, numRows * width_);
+        System.arraycopy(rowFill_, topRow, rowFill_, topRow + shift, numRows);
 
-            /* Shift each value down a row */
-            for (int eachCol = 0; eachCol < width_; eachCol++) {
+    }
 
-                /* Current position */
-                BoardPosition currentPos = this.accessPosition(eachCol,  rowNumber);
 
-                /* Position below */
-                BoardPosition belowPos = this.accessPosition(eachCol, rowNumber + 1);
+    /*
+     * Drop the rows of a board packed into longs (perRow words to a row, row 0 at index first)
+     * over the first numLines completed rows listed in completedRows, bottom first: the rows
+     * from topRow down move, those above never do.  Each run of surviving rows between two
+     * completed lines is moved as one block, so the cost doesn't depend on how many lines go at
+     * once.  The numLines rows from topRow down are left for the caller to clear.  Every board
+     * packed into longs clears its lines through here (BatchEnvironment's too).
+     */
+    static void dropRowsOver(long[] rows, int first, int perRow, int topRow, int[] completedRows, int numLines) {
 
-                /* Set entity to position below */
-                belowPos.setEntityHere(currentPos.returnEntityHere());
-                belowPos.setHasEntity(currentPos.hasEntity());
+        for (int eachLine = 0; eachLine < numLines; eachLine++) {
 
-                /* Null out the current row */
-                currentPos.setEntityHere(null);
-                currentPos.setHasEntity(false);
+            int runBottom = completedRows[eachLine] - 1;
+            int runTop = getRunTop(topRow, completedRows, eachLine, numLines);
+
+            /* Everything above this line drops one more row than everything below it */
+            if (runBottom >= runTop)
+                System.arraycopy(rows, first + runTop * perRow, rows, first + (runTop + eachLine + 1) * perRow,
+                        (runBottom - runTop + 1) * perRow);
 
-            }
         }
+
+    }
+
+
+    /* Get the top of the run of rows between a completed line and the next one above it (or topRow, above the last) */
+    static int getRunTop(int topRow, int[] completedRows, int eachLine, int numLines) {
+
+        return (eachLine + 1 < numLines) ? completedRows[eachLine + 1] + 1 : topRow;
+
     }
 
 }
@@ -0,0 +1,100 @@
+package game;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class scores a board for the bots: the higher the score, the
+ * better the board is to play on from.
+ *
+ * The score is a weighted sum of four things about the stack:
+ *
+ *      aggregate height  the sum of the column heights
+ *      holes             empty cells with a block somewhere above them
+ *      bumpiness         the sum of the height differences between
+ *                        neighbouring columns
+ *      lines cleared     lines cleared on the way to the board
+ *
+ * A board the game would end on scores LOSS, lower than any other.  The
+ * weights never change once set, so one evaluator can be shared by any
+ * number of threads.
+ *
+ */
+
+public class BoardEvaluator {
+
+    /* Index of each weight */
+    public static final int HEIGHT = 0;
+    public static final int HOLES = 1;
+    public static final int BUMPINESS = 2;
+    public static final int LINES = 3;
+    public static final int NUM_WEIGHTS = 4;
+
+    /* Weights that play well on a standard board */
+    private static final double[] DEFAULT_WEIGHTS = { -0.510066, -0.35663, -0.184483, 0.760666 };
+
+    /* Score for a board the game ends on */
+    public static final double LOSS = -1.0e9;
+
+    /* The weights, by index */
+    private final double[] weights_;
+
+
+    /** CONSTRUCTOR **/
+    public BoardEvaluator() {
+
+        this(DEFAULT_WEIGHTS);
+
+    }
+
+
+    /** CONSTRUCTOR: weights indexed HEIGHT, HOLES, BUMPINESS and LINES **/
+    public BoardEvaluator(double[] weights) {
+
+        if (weights.length != NUM_WEIGHTS)
+            throw new IllegalArgumentException("Need " + NUM_WEIGHTS + " weights, not " + weights.length);
+
+        weights_ = weights.clone();
+
+    }
+
+
+    /** METHODS **/
+
+    /* Score a board, reached by clearing linesCleared lines along the way */
+    public double evaluate(ImmutableBoard thisBoard, int linesCleared) {
+
+        if (thisBoard.isToppedOut()) return LOSS;
+
+        return weights_[HEIGHT] * thisBoard.getAggregateHeight()
+                + weights_[HOLES] * thisBoard.getHoles()
+                + weights_[BUMPINESS] * thisBoard.getBumpiness()
+                + weights_[LINES] * linesCleared;
+
+    }
+
+
+    /* Get a weight */
+    public double getWeight(int index) {
+
+        return weights_[index];
+
+    }
+
+
+    /* Get a copy of all the weights */
+    public double[] getWeights() {
+
+        return weights_.clone();
+
+    }
+
+
+    public String toString() {
+
+        return String.format("height %.4f, holes %.4f, bumpiness %.4f, lines %.4f",
+                weights_[HEIGHT], weights_[HOLES], weights_[BUMPINESS], weights_[LINES]);
+
+    }
+
+}
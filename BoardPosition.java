@@ -12,6 +12,12 @@ import java.awt.Point;
  *      relative x/y positioning;
  *      a link to the Tetrad that is currently on that position;
  *      
+ * A BoardPosition handed out by a Board is a view onto that Board's
+ * packed occupancy rows: it does not hold the occupancy itself, but reads
+ * and writes it through the Board.  A free-standing BoardPosition (one
+ * built without a Board, e.g. as a base position for a new Tetrad) keeps
+ * its own values, as before.
+ *
  */
 
 public class BoardPosition {
@@ -22,8 +28,11 @@ public class BoardPosition {
      */
     private Point location_;
     
+    /* The Board this position is a view onto (null if free-standing) */
+    private Board board_;
+
     /* Each location also notes whether it has an entity */
-    private Boolean hasEntity_;
+    private boolean hasEntity_;
     
     /* If there is an entity, the location provides a link to it */
     private Entity entityHere_;
@@ -32,8 +41,17 @@ public class BoardPosition {
     /** Constructor for BoardPosition **/
     public BoardPosition(int xPos, int yPos) {
         
+        this(null, xPos, yPos);
+
+    }
+
+
+    /** Constructor for a BoardPosition backed by a Board **/
+    public BoardPosition(Board onBoard, int xPos, int yPos) {
+
         /* Default values: point(x,y), no entity */
         location_ = new Point(xPos, yPos);
+        board_ = onBoard;
         hasEntity_ = false;
         entityHere_ = null;
         
@@ -53,6 +71,7 @@ public class BoardPosition {
     /* Get value for hasEntity_ */
     public Boolean hasEntity() {
         
+        if (board_ != null) return board_.isOccupied(location_.x, location_.y);
         return hasEntity_;
         
     }
@@ -61,7 +80,7 @@ public class BoardPosition {
     /* If there is an entity here, get name of entity */
     public String getNameOfEntityHere() {
         
-        return entityHere_.getName();
+        return returnEntityHere().getName();
         
     }
     
@@ -69,6 +88,7 @@ public class BoardPosition {
     /* Return the actual entity that is at this position */
     public Entity returnEntityHere() {
         
+        if (board_ != null) return board_.accessEntity(location_.x, location_.y);
         return entityHere_;
         
     }
@@ -76,6 +96,11 @@ public class BoardPosition {
     
     /* Set the value for hasEntity_ */ 
     public void setHasEntity(Boolean setTo) {
+
+        if (board_ != null) {
+            board_.setOccupied(location_.x, location_.y, setTo);
+            return;
+        }
         
         hasEntity_ = setTo;
         
@@ -85,6 +110,11 @@ public class BoardPosition {
     /* Set the entity on this location */
     public void setEntityHere(Entity setThis) {
         
+        if (board_ != null) {
+            board_.setEntity(location_.x, location_.y, setThis);
+            return;
+        }
+
         entityHere_ = setThis;
         
     }
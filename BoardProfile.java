@@ -0,0 +1,88 @@
+package game;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class gives a read-only view of the surface profile of the
+ * stack of lodged blocks on a Board: the height of each column, the
+ * number of holes, the bumpiness of the surface and the tallest column.
+ *
+ * The Board keeps these values up to date as Tetrads lodge and lines
+ * are cleared, so reading them never means scanning the board.  The
+ * piece still falling is not part of the stack, so is not counted.
+ *
+ */
+
+public class BoardProfile {
+
+    /* The Board whose stack this profile describes */
+    private Board board_;
+
+
+    /** CONSTRUCTOR **/
+    public BoardProfile(Board thisBoard) {
+
+        board_ = thisBoard;
+
+    }
+
+
+    /** METHODS **/
+
+    /* Get the number of columns in the profile */
+    public int getWidth() {
+
+        return board_.getWidth();
+
+    }
+
+
+    /* Get the height of a column: the number of rows from its top block to the bottom of the board */
+    public int getColumnHeight(int column) {
+
+        return board_.getColumnHeight(column);
+
+    }
+
+
+    /* Get the row of the top block in a column (the board height if the column is empty) */
+    public int getColumnTop(int column) {
+
+        return board_.getColumnTop(column);
+
+    }
+
+
+    /* Get the height of the tallest column */
+    public int getMaxHeight() {
+
+        return board_.getMaxHeight();
+
+    }
+
+
+    /* Get the sum of all the column heights */
+    public int getAggregateHeight() {
+
+        return board_.getAggregateHeight();
+
+    }
+
+
+    /* Get the number of empty cells that have a block somewhere above them */
+    public int getHoles() {
+
+        return board_.getHoles();
+
+    }
+
+
+    /* Get the sum of the height differences between neighbouring columns */
+    public int getBumpiness() {
+
+        return board_.getBumpiness();
+
+    }
+
+}
@@ -24,7 +24,7 @@ public class Entity {
     protected String name_;
     
     /* Whether the Entity is lodged at this position or can move */
-    protected Boolean lodged_;
+    protected boolean lodged_;
     
     /* 
      * The positions_ array provides details of where on the 
@@ -106,7 +106,7 @@ public class Entity {
     /*
      * Check if entity is lodged
      */
-    public Boolean entityLodgeCheck() {
+    public boolean entityLodgeCheck() {
         
         return lodged_;
         
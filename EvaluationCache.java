@@ -0,0 +1,358 @@
+package game;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class is a BoardEvaluator that remembers the scores it has worked
+ * out, so a board reached again (down another branch of a search, or when
+ * the next piece is decided on) is looked up rather than scored again.
+ *
+ * Only the stack is scored from the board, so a score is kept against the
+ * board's Zobrist hash of its cells and its size (the same cells score
+ * differently on a board of another height), without the lines cleared on
+ * the way: they are added on each time.  Two boards with the same 64-bit
+ * key are taken to be the same board.  A lookup costs about as much as scoring a
+ * board of standard size, so the cache pays where boards come up again
+ * and again (many bots over the same openings, or replayed games), not in
+ * a search that rarely meets the same board twice.
+ *
+ * The cache never takes more than its memory cap: the entries, their index
+ * (a power of two in size, so between two and four slots an entry) and
+ * the arrays' own headers all count towards it.  It is split into
+ * segments by hash, each locked on its own so many bots can share one, and
+ * each holding a fixed number of entries in an array, found through an
+ * open-addressed index.  When a segment is full, a CLOCK hand goes round
+ * its entries: an entry used since the hand last passed is given another
+ * turn, and the first one that wasn't is replaced.
+ *
+ */
+
+public class EvaluationCache extends BoardEvaluator {
+
+    /* Default memory cap */
+    public static final long DEFAULT_MAX_BYTES = 16L << 20; // 16MB
+
+    /* Bytes per entry (key, score and the used bit), and per index slot */
+    public static final int BYTES_PER_ENTRY = 8 + 8 + 1;
+    public static final int BYTES_PER_INDEX_SLOT = 4;
+
+    /* Bytes a segment takes besides its entries and index: the segment itself, and its four arrays' headers */
+    private static final int SEGMENT_OVERHEAD = 32 + 4 * 16;
+
+    /* Most index slots in a segment */
+    private static final int MAX_INDEX_SIZE = 1 << 30;
+
+    /* Default number of segments */
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    /* The segments, and the mask picking one from a hash */
+    private final Segment[] segments_;
+    private final int segmentMask_;
+
+    /* Lookups found, lookups missed, and entries replaced */
+    private final LongAdder hits_ = new LongAdder();
+    private final LongAdder misses_ = new LongAdder();
+    private final LongAdder evictions_ = new LongAdder();
+
+
+    /** CONSTRUCTOR **/
+    public EvaluationCache() {
+
+        this(new BoardEvaluator(), DEFAULT_MAX_BYTES, DEFAULT_SEGMENTS);
+
+    }
+
+
+    /** CONSTRUCTOR: scores with scorer's weights, in at most maxBytes split over numSegments segments **/
+    public EvaluationCache(BoardEvaluator scorer, long maxBytes, int numSegments) {
+
+        super(scorer.getWeights());
+
+        /* A power of two segments, so the hash picks one with a mask */
+        int segments = Integer.highestOneBit(Math.max(numSegments - 1, 1)) << 1;
+        long segmentBytes = maxBytes / segments - SEGMENT_OVERHEAD;
+
+        /* The index size that fits the most entries in a segment, at no more than one entry per two slots */
+        int indexSize = 0;
+        long entries = 0;
+
+        for (long eachSize = 2; eachSize <= MAX_INDEX_SIZE && eachSize * BYTES_PER_INDEX_SLOT < segmentBytes; eachSize *= 2) {
+            long fits = Math.min(eachSize / 2, (segmentBytes - eachSize * BYTES_PER_INDEX_SLOT) / BYTES_PER_ENTRY);
+            if (fits > entries) {
+                indexSize = (int) eachSize;
+                entries = fits;
+            }
+        }
+
+        if (entries == 0)
+            throw new IllegalArgumentException("Cache of " + maxBytes + " bytes is too small for " + segments + " segments");
+
+        segments_ = new Segment[segments];
+        for (int eachSegment = 0; eachSegment < segments; eachSegment++)
+            segments_[eachSegment] = new Segment((int) entries, indexSize);
+
+        segmentMask_ = segments - 1;
+
+        if (getAllocatedBytes() > maxBytes)
+            throw new IllegalStateException("Cache takes " + getAllocatedBytes() + " bytes, over its cap of " + maxBytes);
+
+    }
+
+
+    /** METHODS **/
+
+    /* Score a board as BoardEvaluator does, looking the stack's score up if it has been worked out before */
+    @Override
+    public double evaluate(ImmutableBoard thisBoard, int linesCleared) {
+
+        if (thisBoard.isToppedOut()) return LOSS;
+
+        long key = thisBoard.getHash() ^ Zobrist.sizeKey(thisBoard.getWidth(), thisBoard.getHeight());
+        Segment segment = segments_[(int) (key >>> 32) & segmentMask_];
+
+        double score;
+
+        synchronized (segment) {
+            score = segment.get(key);
+        }
+
+        if (Double.isNaN(score)) {
+
+            misses_.increment();
+            score = super.evaluate(thisBoard, 0);
+
+            synchronized (segment) {
+                if (segment.put(key, score)) evictions_.increment();
+            }
+
+        } else {
+
+            hits_.increment();
+
+        }
+
+        return score + getWeight(LINES) * linesCleared;
+
+    }
+
+
+    /* Forget every score */
+    public void clear() {
+
+        for (Segment eachSegment : segments_) {
+            synchronized (eachSegment) {
+                eachSegment.clear();
+            }
+        }
+
+    }
+
+
+    /*
+     * One segment of the cache: entries in fixed slots, found by hash through an index of twice
+     * as many slots (linear probing, holding entry + 1, or 0 for empty), and a CLOCK hand for
+     * choosing which entry to replace.  The caller holds the segment's lock.
+     */
+    private static class Segment {
+
+        private final long[] keys_;
+        private final double[] scores_;
+        private final boolean[] used_;
+        private final int[] index_;
+        private final int indexMask_;
+        private int size_;
+        private int hand_;
+
+        Segment(int capacity, int indexSize) {
+
+            keys_ = new long[capacity];
+            scores_ = new double[capacity];
+            used_ = new boolean[capacity];
+
+            index_ = new int[indexSize];
+            indexMask_ = indexSize - 1;
+
+        }
+
+        /* Bytes this segment takes */
+        long getAllocatedBytes() {
+
+            return SEGMENT_OVERHEAD + (long) keys_.length * BYTES_PER_ENTRY + (long) index_.length * BYTES_PER_INDEX_SLOT;
+
+        }
+
+        /* Get the score kept for a key, marking it used, or NaN if there is none */
+        double get(long key) {
+
+            int entry = find(key);
+            if (entry < 0) return Double.NaN;
+
+            used_[entry] = true;
+            return scores_[entry];
+
+        }
+
+        /* Keep a score for a key: returns true if another entry was replaced to make room */
+        boolean put(long key, double score) {
+
+            /* Another thread may have scored it in the meantime */
+            if (find(key) >= 0) return false;
+
+            boolean evicted = false;
+            int entry;
+
+            if (size_ < keys_.length) {
+
+                entry = size_++;
+
+            } else {
+
+                /* Go round until an entry not used since last time comes up */
+                while (used_[hand_]) {
+                    used_[hand_] = false;
+                    hand_ = (hand_ + 1 == keys_.length) ? 0 : hand_ + 1;
+                }
+
+                entry = hand_;
+                hand_ = (hand_ + 1 == keys_.length) ? 0 : hand_ + 1;
+
+                removeFromIndex(keys_[entry]);
+                evicted = true;
+
+            }
+
+            keys_[entry] = key;
+            scores_[entry] = score;
+            used_[entry] = false;
+
+            int slot = home(key);
+            while (index_[slot] != 0) slot = (slot + 1) & indexMask_;
+            index_[slot] = entry + 1;
+
+            return evicted;
+
+        }
+
+        /* Find the entry for a key, or -1 */
+        private int find(long key) {
+
+            for (int slot = home(key); index_[slot] != 0; slot = (slot + 1) & indexMask_)
+                if (keys_[index_[slot] - 1] == key) return index_[slot] - 1;
+
+            return -1;
+
+        }
+
+        /* Take a key out of the index, shifting back any entries after it that probed past it */
+        private void removeFromIndex(long key) {
+
+            int slot = home(key);
+            while (keys_[index_[slot] - 1] != key) slot = (slot + 1) & indexMask_;
+
+            int next = (slot + 1) & indexMask_;
+
+            while (index_[next] != 0) {
+
+                int wants = home(keys_[index_[next] - 1]);
+
+                /* Move it back if its home isn't between the gap and where it is now */
+                if (((next - wants) & indexMask_) >= ((next - slot) & indexMask_)) {
+                    index_[slot] = index_[next];
+                    slot = next;
+                }
+
+                next = (next + 1) & indexMask_;
+
+            }
+
+            index_[slot] = 0;
+
+        }
+
+        /* Index slot a key starts probing from (the segment was picked by the high bits) */
+        private int home(long key) {
+
+            return (int) key & indexMask_;
+
+        }
+
+        /* Forget every entry */
+        void clear() {
+
+            Arrays.fill(index_, 0);
+            size_ = 0;
+            hand_ = 0;
+
+        }
+
+    }
+
+
+    /** STATISTICS **/
+
+    /* Get the number of boards looked up and found */
+    public long getHits() {
+
+        return hits_.sum();
+
+    }
+
+
+    /* Get the number of boards looked up and not found (so scored) */
+    public long getMisses() {
+
+        return misses_.sum();
+
+    }
+
+
+    /* Get the fraction of lookups found */
+    public double getHitRate() {
+
+        long hits = hits_.sum();
+        long lookups = hits + misses_.sum();
+
+        return (lookups == 0) ? 0 : (double) hits / lookups;
+
+    }
+
+
+    /* Get the number of entries replaced to make room */
+    public long getEvictions() {
+
+        return evictions_.sum();
+
+    }
+
+
+    /* Get the most entries the cache holds */
+    public long getCapacity() {
+
+        return (long) segments_.length * segments_[0].keys_.length;
+
+    }
+
+
+    /* Get the bytes the cache takes: never more than the cap it was made with */
+    public long getAllocatedBytes() {
+
+        long allocated = 0;
+        for (Segment eachSegment : segments_) allocated += eachSegment.getAllocatedBytes();
+
+        return allocated;
+
+    }
+
+
+    public String toString() {
+
+        return String.format("%s; cache of %d, hit rate %.1f%% (%d hits, %d misses), %d evictions",
+                super.toString(), getCapacity(), getHitRate() * 100, getHits(), getMisses(), getEvictions());
+
+    }
+
+}
@@ -0,0 +1,175 @@
+package game;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class holds, for an empty board, the fewest inputs that take a new
+ * piece of each shape from where it comes on to each placement: for every
+ * shape, spawn column, orientation and left-hand column it lands in.
+ *
+ * It is worked out once per board size, by a Reachability search from
+ * every spawn column, and shared from then on.  With clear rows between
+ * the stack and the spawn row, a piece dropped straight down goes just as
+ * it would on an empty board, so the bots look their steering up here
+ * rather than searching; and the count is what "finesse" is measured
+ * against: inputs a player used beyond it are finesse errors.
+ *
+ * The table never changes once built, so it can be shared by any number
+ * of threads.
+ *
+ */
+
+public class FinesseTable {
+
+    /* Returned when a placement cannot be reached */
+    public static final int UNREACHABLE = -1;
+
+    /* The tables built so far, by board size */
+    private static final ConcurrentHashMap<Long, FinesseTable> TABLES = new ConcurrentHashMap<>();
+
+    /* Number of shapes */
+    private static final int NUM_SHAPES = Shape.values().length;
+
+    /* Board width the table is for */
+    private final int width_;
+
+    /* Per [shape][spawn column][orientation with the same cells][left column]: where its inputs start, and how many */
+    private final int[] starts_;
+    private final byte[] lengths_;
+
+    /* Every sequence of inputs, one GameInput flag per byte, end to end */
+    private final byte[] inputs_;
+
+
+    /** CONSTRUCTOR: search every placement of every shape on an empty board **/
+    private FinesseTable(int width, int height) {
+
+        width_ = width;
+
+        int numEntries = NUM_SHAPES * width * 4 * width;
+        starts_ = new int[numEntries];
+        lengths_ = new byte[numEntries];
+        Arrays.fill(starts_, UNREACHABLE);
+
+        ImmutableBoard empty = ImmutableBoard.empty(width, height);
+        Reachability reachability = new Reachability();
+        int[] placements = new int[PlacementBot.MAX_PLACEMENTS];
+        int[] sequence = new int[4 * (width + 4) * (height + 4)];
+        byte[] inputs = new byte[256];
+        int numInputs = 0;
+
+        for (int eachShape = 0; eachShape < NUM_SHAPES; eachShape++) {
+
+            Shape thisShape = Shape.fromOrdinal(eachShape);
+
+            for (int spawnX = 0; spawnX < width; spawnX++) {
+
+                int numFound = reachability.search(empty, thisShape, spawnX, Game.SPAWN_ROW, 0, placements);
+
+                for (int eachFound = 0; eachFound < numFound; eachFound++) {
+
+                    int orientation = PlacementBot.placementOrientation(placements[eachFound]);
+                    int entry = index(thisShape, spawnX, thisShape.getCanonicalOrientation(orientation),
+                            PlacementBot.placementX(placements[eachFound]) + thisShape.getMinX(orientation));
+
+                    int length = reachability.getInputs(eachFound, sequence);
+                    if (length > Byte.MAX_VALUE) continue;
+
+                    if (numInputs + length > inputs.length) inputs = Arrays.copyOf(inputs, 2 * (numInputs + length));
+                    for (int eachInput = 0; eachInput < length; eachInput++)
+                        inputs[numInputs + eachInput] = (byte) sequence[eachInput];
+
+                    starts_[entry] = numInputs;
+                    lengths_[entry] = (byte) length;
+                    numInputs += length;
+
+                }
+
+            }
+
+        }
+
+        inputs_ = Arrays.copyOf(inputs, numInputs);
+
+    }
+
+
+    /** METHODS **/
+
+    /* Get the table for a board size, building it the first time it is asked for */
+    public static FinesseTable forBoard(int width, int height) {
+
+        return TABLES.computeIfAbsent(((long) width << 32) | height, key -> new FinesseTable(width, height));
+
+    }
+
+
+    /*
+     * Get the fewest inputs (the hard drop included) that take a new piece, which came on with
+     * its base in column spawnX, to the placement with its base at baseX in the given orientation
+     * (0 -> 4).  Returns UNREACHABLE if it can't get there.
+     */
+    public int getInputCount(Shape thisShape, int spawnX, int orientation, int baseX) {
+
+        int entry = find(thisShape, spawnX, orientation, baseX);
+        return (entry < 0) ? UNREACHABLE : lengths_[entry];
+
+    }
+
+
+    /*
+     * Write the fewest inputs (GameInput flags, one per input, ending with the hard drop) that
+     * take a new piece to a placement, as for getInputCount().  Returns the number written, or
+     * UNREACHABLE.
+     */
+    public int getInputs(Shape thisShape, int spawnX, int orientation, int baseX, int[] inputs) {
+
+        int entry = find(thisShape, spawnX, orientation, baseX);
+        if (entry < 0) return UNREACHABLE;
+
+        int start = starts_[entry];
+        int length = lengths_[entry];
+        for (int eachInput = 0; eachInput < length; eachInput++)
+            inputs[eachInput] = inputs_[start + eachInput];
+
+        return length;
+
+    }
+
+
+    /*
+     * Get the finesse errors in placing a piece with inputsUsed inputs: how many more than the
+     * fewest it could have been done in.  Returns 0 if the placement isn't in the table.
+     */
+    public int getFinesseErrors(Shape thisShape, int spawnX, int orientation, int baseX, int inputsUsed) {
+
+        int fewest = getInputCount(thisShape, spawnX, orientation, baseX);
+        return (fewest == UNREACHABLE) ? 0 : Math.max(inputsUsed - fewest, 0);
+
+    }
+
+
+    /* Get the entry for a placement, or -1 if it is off the board or was never reached */
+    private int find(Shape thisShape, int spawnX, int orientation, int baseX) {
+
+        int left = baseX + thisShape.getMinX(orientation);
+        if (spawnX < 0 || spawnX >= width_ || left < 0 || left >= width_) return -1;
+
+        int entry = index(thisShape, spawnX, thisShape.getCanonicalOrientation(orientation % 4), left);
+        return (starts_[entry] == UNREACHABLE) ? -1 : entry;
+
+    }
+
+
+    /* Index of an entry, by shape, spawn column, orientation with the same cells and left column */
+    private int index(Shape thisShape, int spawnX, int canonical, int left) {
+
+        return ((thisShape.ordinal() * width_ + spawnX) * 4 + canonical) * width_ + left;
+
+    }
+
+}
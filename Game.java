@@ -1,10 +1,10 @@
 package game;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.util.Random;
-
-import javax.swing.Timer;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.locks.LockSupport;
 
 /***
  * 
@@ -29,7 +29,7 @@ public class Game {
     private TetronimoWindow gameWindow_;
 
     /* Boolean to confirm if game in play */
-    private Boolean inPlay_;
+    private volatile Boolean inPlay_;
 
     /* The piece currently controlled by the player */
     private Tetrad currentPiece_;
@@ -37,27 +37,88 @@ public class Game {
     /* The shape of the next piece to be delivered to the player */
     private Shape nextPiece_;
 
+    /* Deals the shape and column of each piece */
+    private PieceGenerator generator_;
+
     /* ScoringMetrics for this Game */
     private ScoringMetrics gameScore_;
 
     /* Base speed for the Game */
     private int baseSpeed_;
 
-    /* Row that is to be flashed on line completion */
-    private int flashRow_ = 0;
+    /* Flash effects playing on the board */
+    private AnimationTimeline timeline_ = new AnimationTimeline();
+
+    /* Row each new piece's base position starts on */
+    public static final int SPAWN_ROW = 2;
+
+    /* Base columns new pieces come on at: SPAWN_LEFT -> width - SPAWN_RIGHT_MARGIN */
+    public static final int SPAWN_LEFT = 3;
+    public static final int SPAWN_RIGHT_MARGIN = 5;
+
+    /* Milliseconds completed lines flash for before they go and the next piece comes on (0 for none) */
+    public static final int DEFAULT_ENTRY_DELAY = 300;
+    private int entryDelay_ = DEFAULT_ENTRY_DELAY;
 
-    /* Boolean to state whether this row shows blocks or not */
-    private boolean flash_ = false;
+    /* Set while completed lines flash: when the next piece is due (in nanoseconds, or in steps if headless) */
+    private boolean awaitingEntry_;
+    private long entryDueAt_;
+
+    /* System property naming a directory to record windowed games into */
+    public static final String REPLAY_DIR_PROPERTY = "tetronimoes.replayDir";
+
+    /* Whether only GameInput.ENTRY ends the entry delay (as when replaying a game) */
+    private boolean entryOnInput_;
+
+    /* Records every step, if this game is being recorded */
+    private ReplayRecorder recorder_;
 
     /* Set the current speed for the Game */
     private int currentSpeed_;
 
-    /* Timer object to automatically drop the row and repaint */
-    Timer tick;
+    /* Whether gravity is ticking, and when it next drops the piece (System.nanoTime()) */
+    private boolean ticking_;
+    private long nextTickAt_;
 
     /* ResetGame switch */
     Boolean resetGame_;
 
+    /* Input posted by the window, for the game loop to apply */
+    private InputQueue inputQueue_ = new InputQueue(256);
+
+    /* Auto-repeat for the keys the player holds down */
+    private InputRepeater inputRepeater_ = new InputRepeater();
+
+    /* Whether the player has paused the game (only the game loop touches this) */
+    private boolean paused_;
+
+    /* Inputs applied so far, and how long they waited on the queue (in nanoseconds) */
+    private long inputsApplied_;
+    private long totalInputLatency_;
+    private long maxInputLatency_;
+
+    /* Set once the game has ended */
+    private volatile boolean gameOver_ = false;
+
+    /* Whether a hard drop goes row by row (with the usual tick before lodging) rather than straight down */
+    private boolean softSpeedDrop_ = false;
+
+    /* Whether this game runs without a window (and without the game loop) */
+    private boolean headless_ = false;
+
+    /* Size of the board for this game */
+    private int boardWidth_ = 12;
+    private int boardHeight_ = 26; // Top six rows are hidden
+
+    /* Anything showing this game */
+    private ArrayList<GameListener> listeners_ = new ArrayList<GameListener>();
+
+    /* A lodged piece is dealt with at the end of the step that lodged it */
+    private Tetrad pendingLodge_;
+
+    /* Number of steps taken so far */
+    private long stepCount_;
+
 
     /** CONSTRUCTOR **/
     public Game(TetronimoWindow passWindow) {
@@ -69,11 +130,41 @@ public class Game {
             gameWindow_ = passWindow;
         }
 
+        /* The window draws the game */
+        addGameListener(gameWindow_);
+
         initiateGame();
 
     }
 
 
+    /** CONSTRUCTOR for a headless game: no window, no tick -> driven by step(int) **/
+    public Game(int boardWidth, int boardHeight) {
+
+        this(boardWidth, boardHeight, new UniformGenerator(System.nanoTime()));
+
+    }
+
+
+    /** CONSTRUCTOR for a headless game dealt by the given generator (the same seed gives the same game) **/
+    public Game(int boardWidth, int boardHeight, PieceGenerator thisGenerator) {
+
+        headless_ = true;
+        entryDelay_ = 0;
+
+        boardWidth_ = boardWidth;
+        boardHeight_ = boardHeight;
+        generator_ = thisGenerator;
+
+        resetGame();
+
+        /* Put the first piece on the board: the game is in play straight away */
+        buildInitialTetrad();
+        inPlay_ = true;
+
+    }
+
+
     public static void main(String[] args) {
 
         // Do whatever we need to, in here.
@@ -119,33 +210,14 @@ public class Game {
     }
 
     
-    /* Build an ActionListener for the Tick */
-    public ActionListener buildTickPerform(Game testGame) {
-        
-        /** CREATE THE ACTION LISTENER FOR TICK **/
-        ActionListener tickPerform = new ActionListener() {
-
-            public void actionPerformed(ActionEvent arg0) {
-
-                testGame.gameWindow_.gameDisplay_.repaint();
-                if (!testGame.gameWindow_.speedDropKeyPressedAlready_) testGame.currentPiece_.dropRow();
-
-            }
-
-        };
-
-        return tickPerform;
-    
-    }
-
     /** 
      * METHODS 
      **/
     
-    /* Start the game by launching the tick */
+    /* Start the game: the game loop starts the tick */
     public void startGame(Game testGame) {
     
-        testGame.tick.start();
+        testGame.postInput(GameInput.START);
     
     }
 
@@ -157,30 +229,39 @@ public class Game {
 
         /* Set inPlay to false */
         inPlay_ = false;
+        gameOver_ = false;
 
         /* Set baseSpeed_ to 500 */
         baseSpeed_ = 500;
 
-        /* Set flashRow_ to 0 and flash_ to false */
-        flashRow_ = 0;
-        flash_ = false;
+        /* Nothing flashing, nothing waiting */
+        timeline_.clear();
+        awaitingEntry_ = false;
 
         /* Initialise the currentSpeed_ to baseSpeed_ */
         currentSpeed_ = baseSpeed_;
 
 
-        if (this.tick == null) {
-            this.tick = new Timer(this.currentSpeed_, buildTickPerform(this));
-        }
+        /* Nothing ticks until the game is started */
+        ticking_ = false;
+        paused_ = false;
+        inputRepeater_.releaseAll();
 
         /* Set ID Number Generator to start at 1 */
         nextID_ = 1;
 
         this.gameScore_ = new ScoringMetrics(this);
 
-        this.createBoard(12, 26); // Top six rows are hidden
+        this.createBoard(boardWidth_, boardHeight_);
 
-        this.consoleDisplay(this.getBoard());
+        /* Deal pieces from the start of the seed, at base columns SPAWN_LEFT -> width - SPAWN_RIGHT_MARGIN */
+        if (generator_ == null) generator_ = new UniformGenerator(System.nanoTime());
+        generator_.setSpawnRange(SPAWN_LEFT, this.gameBoard_.getWidth() - SPAWN_RIGHT_MARGIN);
+
+        if (!headless_) this.consoleDisplay(this.getBoard());
+
+        pendingLodge_ = null;
+        stepCount_ = 0;
 
         int placeNum = 1;
         this.currentPiece_ = null;
@@ -194,38 +275,477 @@ public class Game {
         /* Reset the system */
         resetGame();
         
-        while (true) {
+        /* Put the first piece on the board */
+        buildInitialTetrad();
+        fireBoardChanged();
 
-            /* The row to check for blocks above the line in this case is Board.checkN */
-            int brokenLine = Board.checkN;
-            
-            while (!this.getBoard().isGameEnded(brokenLine)) {
+        /* Record the game, if asked to (-Dtetronimoes.replayDir=<directory>) */
+        String replayDir = System.getProperty(REPLAY_DIR_PROPERTY);
+        if (replayDir != null)
+            startRecording(Paths.get(replayDir, "game-" + System.currentTimeMillis() + ReplayRecorder.EXTENSION));
 
-                /* If game is ended, stop all ticking */
+        /* This thread is now the only one that touches the board */
+        inputQueue_.setConsumer(Thread.currentThread());
+        runGameLoop();
+
+    }
+
+
+    /*
+     * The game loop.  Each time round it applies whatever input the window has posted, drops
+     * the piece if the tick is due and brings on the next piece once any flashing lines have
+     * gone.  Then it parks until the next of those is due, or until more input arrives.  While
+     * the game is paused (or over, or not started) nothing is due, so it parks until input comes.
+     */
+    private void runGameLoop() {
 
-                buildInitialTetrad();
+        while (!Thread.currentThread().isInterrupted()) {
 
-                buildReplacementTetrad();
+            long now = System.nanoTime();
+            long stepsBefore = stepCount_;
 
-                Random newRand = new Random();
-                //if (newRand.nextInt(((3 - 1) + 1) + 1) == 1) leftTetrad.moveLeft();
-                //if (newRand.nextInt(((3 - 1) + 1) + 1) == 2) leftTetrad.moveRight();
-                //if (newRand.nextInt(((3 - 1) + 1) + 1) == 3) leftTetrad.turnRight();
+            drainInputs(now);
 
+            if (!paused_ && !gameOver_) {
 
+                /* Completed lines have finished flashing */
+                if (awaitingEntry_ && now - entryDueAt_ >= 0) step(GameInput.ENTRY);
 
-                if (this.getBoard().isGameEnded(brokenLine)) {
-                    this.stopTicking();
-                    this.gameWindow_.gameDisplay_.repaint();
+                /* Moves and soft drops repeating while their keys are held */
+                int repeats;
+                while ((repeats = inputRepeater_.dueInputs(now)) != GameInput.NONE) applyRepeats(repeats);
+
+                /* Gravity: keep to the current speed, but never try to catch up on missed ticks (soft drop stands in for it) */
+                if (ticking_ && now - nextTickAt_ >= 0) {
+                    if (!inputRepeater_.isHeld(GameInput.SOFT_DROP)) step(GameInput.GRAVITY);
+                    nextTickAt_ += currentSpeed_ * 1000000L;
+                    if (nextTickAt_ - now < 0) nextTickAt_ = now + currentSpeed_ * 1000000L;
                 }
 
-                this.gameWindow_.gameDisplay_.repaint();
+                /* Something else moved the piece: a charged shift takes it to the wall again */
+                int charged = inputRepeater_.getChargedShift();
+                if (charged != GameInput.NONE && stepCount_ != stepsBefore && !gameOver_) applyRepeats(charged);
+
+            }
+
+            parkUntilDue();
+
+        }
+
+    }
+
+
+    /* Apply every input waiting on the queue */
+    private void drainInputs(long now) {
+
+        while (!inputQueue_.isEmpty()) {
+
+            int event = inputQueue_.peekEvent();
+
+            /* Note how long the input waited */
+            long latency = now - inputQueue_.peekTime();
+            inputsApplied_++;
+            totalInputLatency_ += latency;
+            if (latency > maxInputLatency_) maxInputLatency_ = latency;
+
+            inputQueue_.remove();
+
+            if ((event & GameInput.START) != 0) {
+                ticking_ = true;
+                nextTickAt_ = now + currentSpeed_ * 1000000L;
+                changeTickSpeed();
+            }
+
+            if ((event & GameInput.PAUSE) != 0) paused_ = true;
 
+            /* On resume, the piece gets a whole tick before it next drops, and held keys start their delays again */
+            if ((event & GameInput.RESUME) != 0) {
+                paused_ = false;
+                nextTickAt_ = now + currentSpeed_ * 1000000L;
+                inputRepeater_.restartDelays(now);
             }
 
+            int inputs = event & GameInput.STEP_INPUTS;
+
+            /* Held keys go to the repeater, which says what to apply straight away */
+            if ((event & GameInput.KEY_DOWN) != 0) inputs = inputRepeater_.keyDown(inputs, now);
+            else if ((event & GameInput.KEY_UP) != 0) inputs = inputRepeater_.keyUp(inputs, now);
+
+            if (inputs != GameInput.NONE && !paused_ && !gameOver_) step(inputs);
+
+        }
+
+    }
+
+
+    /* Park the game loop until the tick or the entry delay is due, or until input arrives */
+    private void parkUntilDue() {
+
+        if (!inputQueue_.isEmpty()) return;
+
+        boolean waiting = false;
+        long dueAt = 0;
+
+        if (!paused_ && !gameOver_) {
+            if (ticking_) {
+                dueAt = nextTickAt_;
+                waiting = true;
+            }
+            if (inputRepeater_.hasDeadline() && (!waiting || inputRepeater_.nextDueAt() - dueAt < 0)) {
+                dueAt = inputRepeater_.nextDueAt();
+                waiting = true;
+            }
+            if (awaitingEntry_ && (!waiting || entryDueAt_ - dueAt < 0)) {
+                dueAt = entryDueAt_;
+                waiting = true;
+            }
+        }
+
+        /* Nothing due: wait for input */
+        if (!waiting) {
+            LockSupport.park(this);
+            return;
+        }
+
+        long waitFor = dueAt - System.nanoTime();
+        if (waitFor > 0) LockSupport.parkNanos(this, waitFor);
+
+    }
+
+
+    /* Apply repeats from held keys: with no repeat delay, a move goes all the way to the wall */
+    private void applyRepeats(int repeats) {
+
+        int moves = repeats & (GameInput.MOVE_LEFT | GameInput.MOVE_RIGHT);
+
+        if (moves != GameInput.NONE && inputRepeater_.isInstantShift()) {
+            for (int eachColumn = 0; eachColumn < gameBoard_.getWidth() && !gameOver_; eachColumn++) {
+                int fromX = currentPiece_.getBaseX();
+                step(moves);
+                if (currentPiece_.getBaseX() == fromX) break;
+            }
+            repeats &= ~moves;
+        }
+
+        if (repeats != GameInput.NONE && !gameOver_) step(repeats);
+
+    }
+
+
+    /* Get the auto-repeat for held keys (to set its delays) */
+    public InputRepeater getInputRepeater() {
+
+        return inputRepeater_;
+
+    }
+
+
+    /* Post input from the window for the game loop to apply (GameInput flags, or START / PAUSE / RESUME) */
+    public boolean postInput(int event) {
+
+        return inputQueue_.offer(event);
+
+    }
+
             
+    /* Clear lines, bring on the next piece and check for game over once the current piece lodges */
+    private void handleLodgedPiece() {
+
+        /* When piece has been lodged */
+        if (!this.currentPiece_.isLodged()) return;
+
+        /* Only the rows covered by the lodged piece can have been completed */
+        this.gameBoard_.checkForCompletedLines(this.currentPiece_.getTopRow(), this.currentPiece_.getBottomRow());
+
+        /* Completed lines flash for the entry delay before the next piece comes on */
+        if (this.gameBoard_.hasPendingLines()) {
+            awaitingEntry_ = true;
+            if (headless_) {
+                entryDueAt_ = stepCount_ + (entryDelay_ + currentSpeed_ - 1) / currentSpeed_;
+            } else {
+                entryDueAt_ = System.nanoTime() + entryDelay_ * 1000000L;
+            }
+            fireBoardChanged();
+            return;
         }
 
+        bringOnNextPiece();
+
+    }
+
+
+    /* Remove any lines left flashing, then bring on the next piece and check for game over */
+    private void bringOnNextPiece() {
+
+        /* The row to check for blocks above the line in this case is Board.checkN */
+        int brokenLine = Board.checkN;
+
+        awaitingEntry_ = false;
+        this.gameBoard_.removePendingLines();
+
+        this.currentPiece_ = this.generateNewTetrad(true, this.nextPiece_);
+
+        /* This command will set the nextPiece_ */
+        this.generateNewTetrad(false, null);
+
+        /* If game is ended, stop all ticking */
+        if (this.getBoard().isGameEnded(brokenLine)) {
+            this.stopTicking();
+        }
+
+        fireBoardChanged();
+
+    }
+
+
+    /* Called by the Board when a piece lodges */
+    public void pieceLodged(Tetrad thisTet) {
+
+        /* It is picked up at the end of the current step */
+        pendingLodge_ = thisTet;
+
+    }
+
+
+    /* The game is over: stop the tick and tell the listeners (once, however many checks find it) */
+    public void signalGameOver() {
+
+        if (gameOver_) return;
+
+        gameOver_ = true;
+        stopTicking();
+
+        for (int eachListener = 0; eachListener < listeners_.size(); eachListener++)
+            listeners_.get(eachListener).gameEnded(this);
+
+    }
+
+
+    /*
+     * Advance the game by one step, applying the given GameInput flags to the current piece
+     * in order.  If the piece lodges part way through, the rest of the inputs are dropped, and
+     * the lines are cleared and the next piece brought on before the step returns.
+     * Return false once the game is over.
+     */
+    public boolean step(int inputs) {
+
+        if (gameOver_ || currentPiece_ == null) return false;
+
+        /* A headless game counts the entry delay in steps (unless told when to end it) */
+        if (awaitingEntry_ && headless_ && !entryOnInput_ && stepCount_ >= entryDueAt_) inputs |= GameInput.ENTRY;
+        if (awaitingEntry_ && (inputs & GameInput.ENTRY) != 0) bringOnNextPiece();
+
+        applyInput(inputs, GameInput.TURN_RIGHT);
+        applyInput(inputs, GameInput.TURN_LEFT);
+        applyInput(inputs, GameInput.MOVE_LEFT);
+        applyInput(inputs, GameInput.MOVE_RIGHT);
+        applyInput(inputs, GameInput.SOFT_DROP);
+        applyInput(inputs, GameInput.HARD_DROP);
+        applyInput(inputs, GameInput.GRAVITY);
+
+        stepCount_++;
+
+        /* Deal with the lodged piece before the step ends */
+        if (pendingLodge_ != null) {
+            Tetrad lodged = pendingLodge_;
+            pendingLodge_ = null;
+            if (lodged == currentPiece_) handleLodgedPiece();
+        }
+
+        /* Record the step: the recording ends with the game */
+        if (recorder_ != null) {
+            recorder_.recordStep(stepCount_, inputs & GameInput.STEP_INPUTS);
+            if (gameOver_) stopRecording();
+        }
+
+        fireBoardChanged();
+
+        return !gameOver_;
+
+    }
+
+
+    /* Write the whole state of the game to a snapshot (between steps, on the game's own thread) */
+    void saveState(ByteBuffer snapshot) {
+
+        snapshot.putInt(nextID_);
+        snapshot.putInt(currentSpeed_);
+        snapshot.putLong(stepCount_);
+        snapshot.put((byte) ((gameOver_ ? 1 : 0) | (awaitingEntry_ ? 2 : 0)));
+        snapshot.putLong(entryDueAt_);
+        snapshot.put((byte) (nextPiece_ == null ? -1 : nextPiece_.ordinal()));
+
+        gameScore_.saveState(snapshot);
+        generator_.saveState(snapshot);
+        gameBoard_.saveState(snapshot);
+        currentPiece_.saveState(snapshot);
+
+    }
+
+
+    /* Take on the state written by saveState(), reusing this game's board and current piece */
+    void restoreState(ByteBuffer snapshot) {
+
+        nextID_ = snapshot.getInt();
+        currentSpeed_ = snapshot.getInt();
+        stepCount_ = snapshot.getLong();
+        int flags = snapshot.get();
+        gameOver_ = (flags & 1) != 0;
+        awaitingEntry_ = (flags & 2) != 0;
+        entryDueAt_ = snapshot.getLong();
+        int nextShape = snapshot.get();
+        nextPiece_ = (nextShape < 0) ? null : Shape.fromOrdinal(nextShape);
+
+        gameScore_.restoreState(snapshot);
+        generator_.restoreState(snapshot);
+        gameBoard_.restoreState(snapshot);
+        currentPiece_.restoreState(snapshot);
+
+        /* Nothing half done carries over */
+        pendingLodge_ = null;
+        timeline_.clear();
+        changeTickSpeed();
+
+        /* A game restored to before its end is back in play */
+        if (!gameOver_) {
+            inPlay_ = true;
+            if (!headless_) ticking_ = true;
+        }
+
+        fireBoardChanged();
+
+    }
+
+
+    /* Record this game to a replay file from here on: call before the first step.  Returns the recorder, to check on it. */
+    public ReplayRecorder startRecording(Path replayFile) {
+
+        recorder_ = new ReplayRecorder(replayFile, this);
+        return recorder_;
+
+    }
+
+
+    /* Stop recording: the replay is finished with the score so far */
+    public void stopRecording() {
+
+        if (recorder_ == null) return;
+
+        recorder_.finish(this);
+        recorder_ = null;
+
+    }
+
+
+    /* Set whether only GameInput.ENTRY ends the entry delay, rather than the clock (or step count) */
+    public void setEntryOnInput(boolean setTo) {
+
+        entryOnInput_ = setTo;
+
+    }
+
+
+    /* Apply a single input flag to the current piece, if it is set and the piece can still move */
+    private void applyInput(int inputs, int thisInput) {
+
+        if ((inputs & thisInput) == 0 || currentPiece_.entityLodgeCheck()) return;
+
+        switch (thisInput) {
+        case GameInput.TURN_RIGHT:
+            currentPiece_.turnRight();
+            break;
+        case GameInput.TURN_LEFT:
+            currentPiece_.turnLeft();
+            break;
+        case GameInput.MOVE_LEFT:
+            currentPiece_.moveLeft();
+            break;
+        case GameInput.MOVE_RIGHT:
+            currentPiece_.moveRight();
+            break;
+        case GameInput.SOFT_DROP:
+        case GameInput.GRAVITY:
+            currentPiece_.dropRow();
+            break;
+        case GameInput.HARD_DROP:
+            currentPiece_.speedDrop();
+            break;
+        }
+
+    }
+
+
+    /* Add something to be told when the game changes */
+    public void addGameListener(GameListener thisListener) {
+
+        listeners_.add(thisListener);
+
+    }
+
+
+    /* Remove a listener */
+    public void removeGameListener(GameListener thisListener) {
+
+        listeners_.remove(thisListener);
+
+    }
+
+
+    /* Tell every listener the board has changed */
+    public void fireBoardChanged() {
+
+        for (int eachListener = 0; eachListener < listeners_.size(); eachListener++)
+            listeners_.get(eachListener).boardChanged(this);
+
+    }
+
+
+    /* Check whether this game runs without a window */
+    public boolean isHeadless() {
+
+        return headless_;
+
+    }
+
+
+    /* Get the number of steps taken so far */
+    public long getStepCount() {
+
+        return stepCount_;
+
+    }
+
+
+    /* Get the number of inputs the game loop has applied */
+    public long getInputsApplied() {
+
+        return inputsApplied_;
+
+    }
+
+
+    /* Get the mean time an input waited between the window posting it and the game applying it, in nanoseconds */
+    public long getMeanInputLatency() {
+
+        if (inputsApplied_ == 0) return 0;
+        return totalInputLatency_ / inputsApplied_;
+
+    }
+
+
+    /* Get the longest any input waited, in nanoseconds */
+    public long getMaxInputLatency() {
+
+        return maxInputLatency_;
+
+    }
+
+
+    /* Check whether the game is over */
+    public boolean isGameOver() {
+
+        return gameOver_;
+
     }
     
     
@@ -242,35 +762,17 @@ public class Game {
         }
         
     }
-
-
-    /* Replace the currentPiece_ with a new piece when Tetrad is lodged */
-    private void buildReplacementTetrad() {
-        
-        /* When piece has been lodged */
-        if (this.currentPiece_.isLodged()) {
-            this.gameBoard_.checkForCompletedLines();
-            this.currentPiece_ = this.generateNewTetrad(true, this.nextPiece_);
-
-            /* This command will set the nextPiece_ */
-            this.generateNewTetrad(false, null);
-        }
-        
-    }
     
     
     /* Output for console just to check everything is initialising */
     public void consoleDisplay(Board show) {
 
-        BoardPosition currentPos = null;
-
         for (int y = 0; y < show.getHeight(); y++) {
 
             System.out.println();
 
             for (int x = 0; x < show.getWidth(); x++) {
-                currentPos = show.accessPosition(x, y);
-                if (currentPos.hasEntity()) {
+                if (show.isOccupied(x, y)) {
                     System.out.print("E");
                 } else {
                     System.out.print("S");
@@ -308,54 +810,32 @@ public class Game {
     }
 
 
-    /* Generate a new, random Tetrad */
+    /* Deal a new Tetrad from the generator: or, if not placing on the board, just note the next shape */
     public Tetrad generateNewTetrad(boolean placeOnBoard, Shape predefShape) {
 
-        // BoardPosition basePosition, Shape thisShape, int numberOfPositions, Board onBoard
-
-        /* Variables for use in calculating new position */
-        int min, max;
-
-        /* Generate a random basePosition: 3 -> width - 5 */
-        min = 3; max = gameBoard_.getWidth() - 5;
-
-        /* Create a new RNG */
-        Random randomNum = new Random();
-
-        /* xPosition for new Tetrad */
-        int newXPos = randomNum.nextInt((max - min) + 1) + min;
-
-        /* Now that we have the xPos, we need to pick a random shape */
-        int shapeNum = randomNum.nextInt((Shape.values().length - 0)) + 0;
-
         /* Check the 'hidden' rows to ensure that nothing is lodged above them */
         checkHiddenRows();
 
-        /* Giving: */
-        Tetrad returnThis = identifyNextPiece(placeOnBoard, predefShape, newXPos, shapeNum);
+        /* The shape after this one is shown as the next piece */
+        if (!placeOnBoard) {
+            nextPiece_ = generator_.peekShape(0);
+            return null;
+        }
+
+        /* Shape and base column come from the generator, together */
+        Shape thisShape = (predefShape == null) ? generator_.peekShape(0) : predefShape;
+        int newXPos = generator_.peekSpawnX(0);
+        generator_.advance();
 
-        return returnThis;
+        return new Tetrad(new BoardPosition(newXPos, SPAWN_ROW), thisShape, 4, getBoard());
 
     }
 
     
-    /* Identify what nextPiece_ should be passed to currentPiece_ */
-    private Tetrad identifyNextPiece(Boolean placeOnBoard, Shape predefShape, int xPos, int shapeNum) {
+    /* Get the generator dealing this game's pieces */
+    public PieceGenerator getPieceGenerator() {
         
-        Tetrad returnThis = null;
-        
-        if (placeOnBoard) {
-            if (predefShape == null) {
-                returnThis = new Tetrad(new BoardPosition(xPos, 2), Shape.values()[shapeNum], 4, getBoard());
-            } else {
-                returnThis = new Tetrad(new BoardPosition(xPos, 2), predefShape, 4, getBoard());
-            }
-        } else {
-            nextPiece_ = Shape.values()[shapeNum];
-            return null;
-        }
-        
-        return returnThis;
+        return generator_;
         
     }
     
@@ -363,17 +843,12 @@ public class Game {
     /* Check the 'hidden' rows for any lodged pieces */
     private void checkHiddenRows() {
         
-        /* Check each and every position in rows 0 -> Board.checkN.  If there's anything in them, it's game over! */
-        for (int y = 0; y <= Board.checkN; y++) 
-            for (int x = 0; x < this.getBoard().getWidth(); x++) 
-
-                if (this.getBoard().accessPosition(x, y).hasEntity() && this.getBoard().accessPosition(x,y).returnEntityHere().entityLodgeCheck()) {
-                    System.out.println("Sorry, there's already a piece above the line... Game over!");
-                    /* Stop ticking */
-                    stopTicking();
-                    gameWindow_.directAccessToDisplay().signalEnded();
-                    //System.exit(99);
-                }
+        /* If anything is lodged in rows 0 -> Board.checkN, the stack is this high, and it's game over! */
+        if (Board.isToppedOut(this.getBoard().getProfile().getMaxHeight(), this.getBoard().getHeight())) {
+            /* Stop ticking: the listeners hear of it through gameEnded() */
+            signalGameOver();
+            //System.exit(99);
+        }
         
     }
     
@@ -405,17 +880,15 @@ public class Game {
     /* Stop the drop tick */
     public void stopTicking() {
 
-        if (tick != null) {
-            tick.stop();
-        }
+        ticking_ = false;
 
     }
 
 
-    /* Change tick speed */
+    /* Change tick speed: the game loop picks up currentSpeed_ from the next tick on, and soft drop keeps to a fifth of it */
     public void changeTickSpeed() {
 
-        tick.setDelay(this.currentSpeed_);;
+        inputRepeater_.setSoftDropRate(this.currentSpeed_ * 1000000L / 5);
 
     }
 
@@ -442,6 +915,20 @@ public class Game {
 
     }
 
+    /* Set whether a hard drop should go row by row rather than straight to its landing row (before recording) */
+    public void setSoftSpeedDrop(boolean setTo) {
+
+        softSpeedDrop_ = setTo;
+
+    }
+
+    /* Check whether a hard drop goes row by row */
+    public boolean isSoftSpeedDrop() {
+
+        return softSpeedDrop_;
+
+    }
+
     /* Return a reference to the TetronimoWindow */
     public TetronimoWindow accessDisplay() {
 
@@ -482,31 +969,34 @@ public class Game {
     }
 
 
-    /* Set the row to be flashed */
-    public void setFlashRow(int setTo) {
+    /* Get the flash effects playing on the board */
+    public AnimationTimeline getTimeline() {
 
-        flashRow_ = setTo;
+        return timeline_;
 
     }
 
-    /* Get the row to be flashed */
-    public int getFlashRow() {
 
-        return flashRow_;
+    /* Get the entry delay: milliseconds completed lines flash for before the next piece comes on */
+    public int getEntryDelay() {
+
+        return entryDelay_;
 
     }
 
-    /* Switch the boolean for flashing */
-    public void setFlash(Boolean setTo) {
 
-        flash_ = setTo;
+    /* Set the entry delay (0 to remove completed lines straight away) */
+    public void setEntryDelay(int setTo) {
+
+        entryDelay_ = Math.max(setTo, 0);
 
     }
 
-    /* Get the boolean for flashing */
-    public Boolean getFlash() {
 
-        return flash_;
+    /* Check whether completed lines are flashing, with the next piece still to come */
+    public boolean isAwaitingEntry() {
+
+        return awaitingEntry_;
 
     }
 
@@ -0,0 +1,340 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class hosts many headless Games in the one JVM.
+ *
+ * Each Game is a cooperative task: when its tick falls due, one step of
+ * the game is run on a shared work-stealing pool, and the next tick is
+ * scheduled on a single TimingWheel shared by every game (rather than a
+ * Swing Timer per game).  A game is only ever stepped by one thread at a
+ * time, as its next tick is not scheduled until its current step is done.
+ *
+ * The tick for each game follows that game's current speed, so games
+ * speed up as they level up, just as they do in a window.  The host keeps
+ * track of how late each tick ran (jitter) and of the total steps taken.
+ *
+ * Once the host is shut down, games finish after the step they are on,
+ * and games waiting for their next tick are finished where they stand.
+ *
+ */
+
+public class GameHost {
+
+    /*
+     * One game run by the host.
+     */
+    public class HostedGame extends TimingWheel.Timeout implements Runnable {
+
+        /* The game itself, and where its inputs come from */
+        private Game game_;
+        private InputSource inputs_;
+
+        /* Number of ticks run, and how late they ran (in nanoseconds): written by one step at a time, read by reports */
+        private volatile long ticks_;
+        private volatile long totalLateness_;
+        private volatile long maxLateness_;
+
+        /* Whether the game has finished */
+        private volatile boolean finished_;
+
+
+        /** CONSTRUCTOR **/
+        HostedGame(Game thisGame, InputSource thisSource) {
+
+            game_ = thisGame;
+            inputs_ = thisSource;
+
+        }
+
+
+        /* Tick is due: hand the step over to the pool */
+        protected void expire(long now) {
+
+            pool_.execute(this);
+
+        }
+
+
+        /* Run one step of the game, then schedule the next tick */
+        public void run() {
+
+            long startTime = System.nanoTime();
+
+            /* Note how late this tick is */
+            long lateness = startTime - getDeadline();
+            if (lateness < 0) lateness = 0;
+            ticks_++;
+            totalLateness_ += lateness;
+            if (lateness > maxLateness_) maxLateness_ = lateness;
+
+            int thisInput = (inputs_ == null) ? GameInput.NONE : inputs_.nextInputs(game_);
+            boolean stillPlaying = game_.step(thisInput | GameInput.GRAVITY);
+
+            totalSteps_.increment();
+            allLateness_.add(lateness);
+
+            if (!stillPlaying || stopped_) {
+                finish();
+                return;
+            }
+
+            /* Keep to the game's own rate, but never try to catch up on missed ticks */
+            long nextDeadline = getDeadline() + game_.getCurrentSpeed() * 1000000L;
+            if (nextDeadline < startTime) nextDeadline = startTime;
+
+            wheel_.schedule(this, nextDeadline);
+
+        }
+
+
+        /* Mark the game finished, once only (a step and a shutdown may both try) */
+        private synchronized void finish() {
+
+            if (finished_) return;
+
+            finished_ = true;
+            liveGames_.decrementAndGet();
+
+        }
+
+
+        /* Get the game */
+        public Game getGame() {
+
+            return game_;
+
+        }
+
+
+        /* Get the number of ticks run */
+        public long getTicks() {
+
+            return ticks_;
+
+        }
+
+
+        /* Get the mean lateness of a tick, in nanoseconds */
+        public long getMeanJitter() {
+
+            if (ticks_ == 0) return 0;
+            return totalLateness_ / ticks_;
+
+        }
+
+
+        /* Get the latest any tick ran, in nanoseconds */
+        public long getMaxJitter() {
+
+            return maxLateness_;
+
+        }
+
+
+        /* Check whether the game has finished */
+        public boolean isFinished() {
+
+            return finished_;
+
+        }
+
+    }
+
+
+    /* The pool the games are stepped on */
+    private ForkJoinPool pool_;
+
+    /* The wheel that schedules every game's ticks */
+    private TimingWheel wheel_;
+
+    /* All the games hosted */
+    private ArrayList<HostedGame> games_ = new ArrayList<HostedGame>();
+
+    /* Number of games still playing */
+    private AtomicInteger liveGames_ = new AtomicInteger();
+
+    /* Totals across all games */
+    private LongAdder totalSteps_ = new LongAdder();
+    private LongAdder allLateness_ = new LongAdder();
+
+    /* When the host started */
+    private long startTime_;
+
+    /* Set when the host is shut down */
+    private volatile boolean stopped_;
+
+
+    /** CONSTRUCTOR **/
+    public GameHost(int parallelism) {
+
+        pool_ = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+
+        /* 1ms slots: 1024 of them covers a whole second before going round again */
+        wheel_ = new TimingWheel(1000000L, 1024);
+
+    }
+
+
+    /** METHODS **/
+
+    /* Add a new headless game to the host: it starts ticking straight away if the host is running */
+    public synchronized HostedGame hostGame(int boardWidth, int boardHeight, InputSource thisSource) {
+
+        if (stopped_) throw new IllegalStateException("Host has been shut down");
+
+        HostedGame thisGame = new HostedGame(new Game(boardWidth, boardHeight), thisSource);
+        games_.add(thisGame);
+        liveGames_.incrementAndGet();
+
+        if (startTime_ != 0) scheduleFirstTick(thisGame);
+
+        return thisGame;
+
+    }
+
+
+    /* Start every game ticking */
+    public synchronized void start() {
+
+        if (startTime_ != 0 || stopped_) return;
+
+        startTime_ = System.nanoTime();
+        wheel_.start();
+
+        for (int eachGame = 0; eachGame < games_.size(); eachGame++)
+            scheduleFirstTick(games_.get(eachGame));
+
+    }
+
+
+    /* Stop the host: games finish after the step they are on, or straight away if waiting for a tick */
+    public synchronized void shutdown() {
+
+        stopped_ = true;
+
+        /* Nothing can be handed to the pool once the wheel's thread has finished */
+        wheel_.stop();
+        pool_.shutdown();
+
+        /* Let the steps already handed over run (unless called from one), waiting out any interrupt but passing it on */
+        boolean interrupted = false;
+        while (ForkJoinTask.getPool() != pool_ && !pool_.isTerminated()) {
+            try {
+                pool_.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) Thread.currentThread().interrupt();
+
+        /* The rest were waiting on the wheel, and will never tick again */
+        for (int eachGame = 0; eachGame < games_.size(); eachGame++)
+            games_.get(eachGame).finish();
+
+    }
+
+
+    /* Schedule the first tick of a game, one tick from now */
+    private void scheduleFirstTick(HostedGame thisGame) {
+
+        wheel_.schedule(thisGame, System.nanoTime() + thisGame.getGame().getCurrentSpeed() * 1000000L);
+
+    }
+
+
+    /* Get the number of games still playing */
+    public int getLiveGames() {
+
+        return liveGames_.get();
+
+    }
+
+
+    /* Get the total steps taken by all games */
+    public long getTotalSteps() {
+
+        return totalSteps_.sum();
+
+    }
+
+
+    /* Get the steps taken per second, across all games, since the host started */
+    public double getThroughput() {
+
+        if (startTime_ == 0) return 0;
+        double seconds = (System.nanoTime() - startTime_) / 1e9;
+        return getTotalSteps() / seconds;
+
+    }
+
+
+    /* Get the mean lateness of a tick across all games, in nanoseconds */
+    public long getMeanJitter() {
+
+        long steps = getTotalSteps();
+        if (steps == 0) return 0;
+        return allLateness_.sum() / steps;
+
+    }
+
+
+    /* Get the latest any tick ran across all games, in nanoseconds */
+    public synchronized long getMaxJitter() {
+
+        long maxJitter = 0;
+        for (int eachGame = 0; eachGame < games_.size(); eachGame++)
+            maxJitter = Math.max(maxJitter, games_.get(eachGame).getMaxJitter());
+        return maxJitter;
+
+    }
+
+
+    /* Get a one-line report on the host */
+    public synchronized String report() {
+
+        return String.format("games %d/%d live, %d steps, %.0f steps/s, jitter mean %.2fms max %.2fms",
+                getLiveGames(), games_.size(), getTotalSteps(), getThroughput(),
+                getMeanJitter() / 1e6, getMaxJitter() / 1e6);
+
+    }
+
+
+    /*
+     * Run a number of games for a number of seconds, reporting every second.  The games have no
+     * input, unless "bots" is given, when each is played by its own PlacementBot (or "beam", for
+     * a BeamSearchBot).
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        int numGames = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+        int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+        String players = (args.length > 2) ? args[2] : "";
+
+        GameHost host = new GameHost(Runtime.getRuntime().availableProcessors());
+        for (int eachGame = 0; eachGame < numGames; eachGame++)
+            host.hostGame(12, 26, players.equals("bots") ? new PlacementBot()
+                    : players.equals("beam") ? new BeamSearchBot() : null);
+
+        host.start();
+
+        for (int eachSecond = 0; eachSecond < seconds && host.getLiveGames() > 0; eachSecond++) {
+            Thread.sleep(1000);
+            System.out.println(host.report());
+        }
+
+        host.shutdown();
+
+    }
+
+}
@@ -0,0 +1,65 @@
+package game;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class holds the inputs that can be passed to Game.step(int).
+ *
+ * Inputs are bit flags, so that several can be passed to a single step:
+ * they are applied in the order they are listed here, with GRAVITY
+ * (drop one row, as the tick does) last.  ENTRY is the exception: it
+ * brings on the next piece before anything else is applied.
+ *
+ */
+
+public final class GameInput {
+
+    /* No input: the step does nothing */
+    public static final int NONE = 0;
+
+    /* Turn clockwise / counter-clockwise */
+    public static final int TURN_RIGHT = 1;
+    public static final int TURN_LEFT = 1 << 1;
+
+    /* Move one block to the left / right */
+    public static final int MOVE_LEFT = 1 << 2;
+    public static final int MOVE_RIGHT = 1 << 3;
+
+    /* Drop one row, as the speed drop key does */
+    public static final int SOFT_DROP = 1 << 4;
+
+    /* Drop straight down and lodge */
+    public static final int HARD_DROP = 1 << 5;
+
+    /* Drop one row, as the tick does */
+    public static final int GRAVITY = 1 << 6;
+
+    /* End the entry delay: remove the flashing lines and bring on the next piece (applied first) */
+    public static final int ENTRY = 1 << 7;
+
+    /* All the flags step(int) acts on */
+    public static final int STEP_INPUTS = (1 << 8) - 1;
+
+    /*
+     * Events a window posts to its game's InputQueue along with the inputs above.  These are
+     * handled by the game loop itself, not by step(int).
+     */
+    public static final int START = 1 << 8;
+    public static final int PAUSE = 1 << 9;
+    public static final int RESUME = 1 << 10;
+
+    /*
+     * A key held down (or let go) for MOVE_LEFT, MOVE_RIGHT or SOFT_DROP: posted along with that
+     * flag, so the game can repeat it for as long as the key is held.
+     */
+    public static final int KEY_DOWN = 1 << 11;
+    public static final int KEY_UP = 1 << 12;
+
+
+    /** REDUNDANT CONSTRUCTOR: constants only **/
+    private GameInput() {
+        // Redundant
+    }
+
+}
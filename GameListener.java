@@ -0,0 +1,25 @@
+package game;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This interface is how anything that shows a Game (such as the
+ * TetronimoWindow) hears about changes to it.  The Game itself never
+ * touches a display, so it runs just the same with no listeners at all.
+ *
+ */
+
+public interface GameListener {
+
+    /*
+     * Something on the board has changed and should be redrawn.
+     */
+    public void boardChanged(Game thisGame);
+
+    /*
+     * The game has ended.
+     */
+    public void gameEnded(Game thisGame);
+
+}
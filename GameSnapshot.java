@@ -0,0 +1,130 @@
+package game;
+
+import java.nio.ByteBuffer;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class holds the complete state of a Game at one point in time,
+ * packed into a single buffer:
+ *
+ *      header:  "TTSS", version, board width and height,
+ *               generator type and seed
+ *      game:    step, speed, piece IDs, entry delay, next piece
+ *      score:   score, lines, level, speed change
+ *      pieces:  the generator's random state and queued pieces
+ *      board:   the packed rows, the shape on each cell, the profile
+ *               and any lines left flashing
+ *      piece:   the current piece's shape, orientation and base
+ *
+ * The buffer is made once, for a given size of board, and reused by every
+ * capture(), so taking and restoring a snapshot only copies primitives:
+ * nothing is allocated.  A snapshot restores into the game it was taken
+ * from (or any game with the same board size and generator), reusing its
+ * Board and current Tetrad.  Like step(), capture and restore must run
+ * between steps, on the game's own thread.
+ *
+ */
+
+public class GameSnapshot {
+
+    /* Format */
+    public static final int MAGIC = 0x54545353; // "TTSS"
+    public static final int VERSION = 1;
+
+    /* Header size, and the most the game, score and piece take */
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 4 + 8;
+    private static final int GAME_SIZE = 4 + 4 + 8 + 1 + 8 + 1 + 16 + 15;
+
+    /* The packed state */
+    private ByteBuffer buffer_;
+
+
+    /** CONSTRUCTOR: a snapshot big enough for this game (empty until captured) **/
+    public GameSnapshot(Game forGame) {
+
+        buffer_ = ByteBuffer.allocate(HEADER_SIZE + GAME_SIZE + PieceGenerator.getStateSize()
+                + forGame.getBoard().getStateSize());
+        buffer_.limit(0);
+
+    }
+
+
+    /** METHODS **/
+
+    /* Capture the state of the game, over anything captured before */
+    public void capture(Game thisGame) {
+
+        PieceGenerator generator = thisGame.getPieceGenerator();
+
+        buffer_.clear();
+
+        buffer_.putInt(MAGIC);
+        buffer_.putInt(VERSION);
+        buffer_.putInt(thisGame.getBoard().getWidth());
+        buffer_.putInt(thisGame.getBoard().getHeight());
+        buffer_.putInt(generator.getType());
+        buffer_.putLong(generator.getSeed());
+
+        thisGame.saveState(buffer_);
+
+        buffer_.flip();
+
+    }
+
+
+    /* Put the game back to the state captured: returns false (leaving the game alone) if it doesn't fit */
+    public boolean restore(Game thisGame) {
+
+        if (buffer_.limit() == 0 || thisGame.getCurrentPiece() == null) return false;
+
+        PieceGenerator generator = thisGame.getPieceGenerator();
+
+        buffer_.position(0);
+
+        if (buffer_.getInt() != MAGIC || buffer_.getInt() != VERSION) return false;
+        if (buffer_.getInt() != thisGame.getBoard().getWidth()) return false;
+        if (buffer_.getInt() != thisGame.getBoard().getHeight()) return false;
+        if (buffer_.getInt() != generator.getType() || buffer_.getLong() != generator.getSeed()) return false;
+
+        thisGame.restoreState(buffer_);
+
+        return true;
+
+    }
+
+
+    /* Get the number of bytes captured */
+    public int size() {
+
+        return buffer_.limit();
+
+    }
+
+
+    /* Copy the captured bytes out (e.g. to save them) */
+    public void writeTo(ByteBuffer destination) {
+
+        buffer_.position(0);
+        destination.put(buffer_);
+        buffer_.position(0);
+
+    }
+
+
+    /* Copy captured bytes in (e.g. ones saved earlier by writeTo()) */
+    public void readFrom(ByteBuffer source, int length) {
+
+        int sourceLimit = source.limit();
+        source.limit(source.position() + length);
+
+        buffer_.clear();
+        buffer_.put(source);
+        buffer_.flip();
+
+        source.limit(sourceLimit);
+
+    }
+
+}
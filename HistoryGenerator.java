@@ -0,0 +1,90 @@
+package game;
+
+import java.nio.ByteBuffer;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This PieceGenerator remembers the last few shapes dealt, and rerolls
+ * (a limited number of times) any shape that is among them.  Repeats are
+ * rare but still possible, and unlike a bag the order of shapes cannot be
+ * counted off.
+ *
+ */
+
+public class HistoryGenerator extends PieceGenerator {
+
+    /* Number of shapes remembered, and number of rerolls allowed */
+    private static final int HISTORY_LENGTH = 4;
+    private static final int MAX_ROLLS = 6;
+
+    /* The shapes most recently dealt, oldest first */
+    private int[] history_ = new int[HISTORY_LENGTH];
+
+
+    /** CONSTRUCTOR **/
+    public HistoryGenerator(long seed) {
+
+        super(seed);
+        resetShapes();
+
+    }
+
+
+    /** METHODS **/
+
+    public int getType() {
+
+        return HISTORY;
+
+    }
+
+
+    protected int rollShape() {
+
+        int shape = random_.nextInt(NUM_SHAPES);
+        for (int eachRoll = 1; eachRoll < MAX_ROLLS && inHistory(shape); eachRoll++)
+            shape = random_.nextInt(NUM_SHAPES);
+
+        /* Shift the history along and remember this one */
+        System.arraycopy(history_, 1, history_, 0, HISTORY_LENGTH - 1);
+        history_[HISTORY_LENGTH - 1] = shape;
+
+        return shape;
+
+    }
+
+
+    protected void resetShapes() {
+
+        /* Start with no shapes remembered */
+        for (int eachEntry = 0; eachEntry < HISTORY_LENGTH; eachEntry++) history_[eachEntry] = -1;
+
+    }
+
+
+    protected void saveShapes(ByteBuffer snapshot) {
+
+        for (int eachEntry = 0; eachEntry < HISTORY_LENGTH; eachEntry++) snapshot.put((byte) history_[eachEntry]);
+
+    }
+
+
+    protected void restoreShapes(ByteBuffer snapshot) {
+
+        for (int eachEntry = 0; eachEntry < HISTORY_LENGTH; eachEntry++) history_[eachEntry] = snapshot.get();
+
+    }
+
+
+    /* Check whether a shape is among the last few dealt */
+    private boolean inHistory(int shape) {
+
+        for (int eachEntry = 0; eachEntry < HISTORY_LENGTH; eachEntry++)
+            if (history_[eachEntry] == shape) return true;
+        return false;
+
+    }
+
+}
@@ -0,0 +1,476 @@
+package game;
+
+import java.util.Arrays;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class is a board that never changes, for searching ahead.
+ *
+ * Placing a piece on an ImmutableBoard gives back a new board with the
+ * piece locked in and any completed lines cleared, and leaves the old one
+ * as it was, so a search can branch from the same board as many times as
+ * it likes without copying it each time.
+ *
+ * Only occupancy is kept (one long per row, so boards up to 64 wide), and
+ * the rows are held in chunks of CHUNK_ROWS.  A new board copies the short
+ * array of chunk references, then copies only the chunks whose rows change:
+ * every other chunk is shared with the board it came from.  Locking a piece
+ * touches one or two chunks; clearing lines rewrites the rows from the
+ * lowest line cleared up to Board.checkN (which is what moves), and nothing
+ * below it.  The column tops are carried along with each board, so a
+ * straight drop never scans the rows.
+ *
+ * Lines clear just as they do on a Board: only rows below Board.checkN + 1
+ * count, and rows above Board.checkN never move.
+ *
+ * Each board carries the Zobrist hash of its cells, worked out from its
+ * parent's as it is made, so it can key a transposition table.
+ *
+ */
+
+public class ImmutableBoard {
+
+    /* Rows held in each chunk */
+    private static final int CHUNK_SHIFT = 3;
+    private static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+
+    /* Returned by getDropY() when a piece has no room to drop into */
+    public static final int NO_ROOM = Integer.MIN_VALUE;
+
+    /* Width and height of the board */
+    private final int width_;
+    private final int height_;
+
+    /* A row with every cell filled */
+    private final long fullRow_;
+
+    /* Occupancy, one long per row (bit x for column x), in chunks that may be shared with other boards */
+    private final long[][] chunks_;
+
+    /* Row of the top block in each column (height_ if empty) */
+    private final int[] columnTop_;
+
+    /* Lines cleared by the placement that made this board */
+    private final int linesCleared_;
+
+    /* Zobrist keys for each cell (shared by every board from the same start) and the hash of the cells */
+    private final long[] cellKeys_;
+    private final long hash_;
+
+
+    /** CONSTRUCTOR **/
+    private ImmutableBoard(int width, int height, long[][] chunks, int[] columnTop, int linesCleared, long[] cellKeys,
+            long hash) {
+
+        width_ = width;
+        height_ = height;
+        fullRow_ = (width == 64) ? -1L : (1L << width) - 1;
+        chunks_ = chunks;
+        columnTop_ = columnTop;
+        linesCleared_ = linesCleared;
+        cellKeys_ = cellKeys;
+        hash_ = hash;
+
+    }
+
+
+    /** METHODS **/
+
+    /* Create an empty board */
+    public static ImmutableBoard empty(int width, int height) {
+
+        checkSize(width, height);
+
+        /* Every chunk starts as the same empty one */
+        long[] emptyChunk = new long[CHUNK_ROWS];
+        long[][] chunks = new long[(height + CHUNK_MASK) >>> CHUNK_SHIFT][];
+        for (int eachChunk = 0; eachChunk < chunks.length; eachChunk++) chunks[eachChunk] = emptyChunk;
+
+        int[] columnTop = new int[width];
+        Arrays.fill(columnTop, height);
+
+        return new ImmutableBoard(width, height, chunks, columnTop, 0, Zobrist.cellKeys(width, height), 0L);
+
+    }
+
+
+    /* Take the lodged blocks of a Board, leaving out the piece its game has falling (if any) */
+    public static ImmutableBoard from(Board thisBoard) {
+
+        Game thisGame = thisBoard.owner_;
+
+        return from(thisBoard, (thisGame == null) ? null : thisGame.getCurrentPiece());
+
+    }
+
+
+    /* Take the blocks of a Board, leaving out the given piece if it has not yet lodged */
+    public static ImmutableBoard from(Board thisBoard, Tetrad falling) {
+
+        int width = thisBoard.getWidth();
+        int height = thisBoard.getHeight();
+
+        checkSize(width, height);
+
+        long[][] chunks = new long[(height + CHUNK_MASK) >>> CHUNK_SHIFT][CHUNK_ROWS];
+        for (int eachRow = 0; eachRow < height; eachRow++)
+            chunks[eachRow >>> CHUNK_SHIFT][eachRow & CHUNK_MASK] = thisBoard.accessRowWord(eachRow, 0);
+
+        /* The falling piece is not part of the stack */
+        if (falling != null && !falling.lodged_ && falling.getTopRow() >= 0) {
+
+            Shape thisShape = falling.getShape();
+            int orientation = falling.getOrientation();
+
+            for (int eachBlock = 0; eachBlock < Shape.BLOCKS; eachBlock++) {
+                int xPos = falling.getBaseX() + thisShape.getBlockX(orientation, eachBlock);
+                int yPos = falling.getBaseY() + thisShape.getBlockY(orientation, eachBlock);
+                chunks[yPos >>> CHUNK_SHIFT][yPos & CHUNK_MASK] &= ~(1L << xPos);
+            }
+
+        }
+
+        long[] cellKeys = Zobrist.cellKeys(width, height);
+        ImmutableBoard taken = new ImmutableBoard(width, height, chunks, findColumnTops(chunks, width, height), 0, cellKeys,
+                hashRows(chunks, cellKeys, width, 0, height - 1));
+
+        /* Lines left flashing during the entry delay are as good as gone */
+        if (thisBoard.hasPendingLines()) return taken.clearLines(chunks, taken.hash_, height - 1);
+
+        return taken;
+
+    }
+
+
+    /* Get the width of the board */
+    public int getWidth() {
+
+        return width_;
+
+    }
+
+
+    /* Get the height of the board */
+    public int getHeight() {
+
+        return height_;
+
+    }
+
+
+    /* Get the occupancy of a row: bit x is set when column x holds a block */
+    public long getRow(int yPos) {
+
+        return chunks_[yPos >>> CHUNK_SHIFT][yPos & CHUNK_MASK];
+
+    }
+
+
+    /* Check whether the cell at (xPos, yPos) holds a block */
+    public boolean isOccupied(int xPos, int yPos) {
+
+        return (getRow(yPos) & (1L << xPos)) != 0;
+
+    }
+
+
+    /* Get the Zobrist hash of the occupied cells: the same as Board.getCellHash() gives for the same cells */
+    public long getHash() {
+
+        return hash_;
+
+    }
+
+
+    /* Check whether another board has exactly the same cells (to rule out a hash collision) */
+    public boolean sameCells(ImmutableBoard other) {
+
+        if (other.width_ != width_ || other.height_ != height_) return false;
+
+        for (int eachChunk = 0; eachChunk < chunks_.length; eachChunk++) {
+            if (chunks_[eachChunk] == other.chunks_[eachChunk]) continue;
+            for (int eachRow = 0; eachRow < CHUNK_ROWS; eachRow++)
+                if (chunks_[eachChunk][eachRow] != other.chunks_[eachChunk][eachRow]) return false;
+        }
+
+        return true;
+
+    }
+
+
+    /* Get the number of lines the placement that made this board cleared */
+    public int getLinesCleared() {
+
+        return linesCleared_;
+
+    }
+
+
+    /*
+     * Check whether a shape in the given orientation, with its base at (baseX, baseY), would
+     * overlap a block or fall outside the board (the same test as Board.collides()).
+     */
+    public boolean collides(Shape thisShape, int orientation, int baseX, int baseY) {
+
+        int left = baseX + thisShape.getMinX(orientation);
+        int top = baseY + thisShape.getMinY(orientation);
+
+        if (left < 0 || baseX + thisShape.getMaxX(orientation) >= width_ ||
+                top < 0 || baseY + thisShape.getMaxY(orientation) >= height_) return true;
+
+        for (int row = 0; row < thisShape.getRowCount(orientation); row++)
+            if ((getRow(top + row) & (thisShape.getRowMask(orientation, row) << left)) != 0) return true;
+
+        return false;
+
+    }
+
+
+    /*
+     * Get the base y a shape comes to rest at when dropped straight down from above the stack
+     * with its base at baseX, from the column tops alone.  Returns NO_ROOM if it is off the side
+     * of the board or would come to rest sticking out of the top.
+     */
+    public int getDropY(Shape thisShape, int orientation, int baseX) {
+
+        if (baseX + thisShape.getMinX(orientation) < 0 || baseX + thisShape.getMaxX(orientation) >= width_)
+            return NO_ROOM;
+
+        int restY = Integer.MAX_VALUE;
+
+        for (int eachBlock = 0; eachBlock < Shape.BLOCKS; eachBlock++) {
+            int column = baseX + thisShape.getBlockX(orientation, eachBlock);
+            restY = Math.min(restY, columnTop_[column] - 1 - thisShape.getBlockY(orientation, eachBlock));
+        }
+
+        if (restY + thisShape.getMinY(orientation) < 0) return NO_ROOM;
+
+        return restY;
+
+    }
+
+
+    /*
+     * Lock a shape in at (baseX, baseY), which must not collide, and clear any lines it completes.
+     * Returns the new board: this one is left as it was.
+     */
+    public ImmutableBoard place(Shape thisShape, int orientation, int baseX, int baseY) {
+
+        long[][] chunks = chunks_.clone();
+        int[] columnTop = columnTop_.clone();
+
+        int left = baseX + thisShape.getMinX(orientation);
+        int top = baseY + thisShape.getMinY(orientation);
+        int numRows = thisShape.getRowCount(orientation);
+
+        long hash = hash_;
+        boolean completed = false;
+
+        /* Top row first, so the first block seen in a column is its new top */
+        for (int row = 0; row < numRows; row++) {
+
+            int yPos = top + row;
+            int chunk = yPos >>> CHUNK_SHIFT;
+            long bits = thisShape.getRowMask(orientation, row) << left;
+
+            if (chunks[chunk] == chunks_[chunk]) chunks[chunk] = chunks_[chunk].clone();
+            long newRow = chunks[chunk][yPos & CHUNK_MASK] | bits;
+            chunks[chunk][yPos & CHUNK_MASK] = newRow;
+
+            for (long eachBit = bits; eachBit != 0; eachBit &= eachBit - 1) {
+                int column = Long.numberOfTrailingZeros(eachBit);
+                if (yPos < columnTop[column]) columnTop[column] = yPos;
+                hash ^= cellKeys_[yPos * width_ + column];
+            }
+
+            if (newRow == fullRow_ && yPos >= Board.checkN + 2) completed = true;
+
+        }
+
+        if (!completed) return new ImmutableBoard(width_, height_, chunks, columnTop, 0, cellKeys_, hash);
+
+        return clearLines(chunks, hash, top + numRows - 1);
+
+    }
+
+
+    /*
+     * Clear the completed lines (none lower than bottomRow) from freshly locked chunks, whose cells
+     * hash to lockedHash, and drop the rows above them.  Every row from the lowest line up to
+     * Board.checkN is rewritten into new chunks; the chunks below are still shared.
+     */
+    private ImmutableBoard clearLines(long[][] locked, long lockedHash, int bottomRow) {
+
+        int topLine = Board.checkN + 2;
+        bottomRow = Math.min(bottomRow, height_ - 1);
+
+        /* Skip any rows at the bottom of the piece that are not complete */
+        while (bottomRow >= topLine && readRow(locked, bottomRow) != fullRow_) bottomRow--;
+
+        long[][] chunks = locked.clone();
+        int linesCleared = 0;
+        int fromRow = bottomRow;
+
+        for (int toRow = bottomRow; toRow >= Board.checkN; toRow--) {
+
+            /* Skip past completed lines (only those low enough to count) */
+            while (fromRow >= topLine && readRow(locked, fromRow) == fullRow_) {
+                fromRow--;
+                linesCleared++;
+            }
+
+            long rowBits = (fromRow >= Board.checkN) ? readRow(locked, fromRow) : 0L;
+            fromRow--;
+
+            /* Each chunk written to is copied once, the first time */
+            int chunk = toRow >>> CHUNK_SHIFT;
+            if (chunks[chunk] == locked[chunk]) chunks[chunk] = locked[chunk].clone();
+            chunks[chunk][toRow & CHUNK_MASK] = rowBits;
+
+        }
+
+        /* Only the rows rewritten change the hash */
+        long hash = lockedHash ^ hashRows(locked, cellKeys_, width_, Board.checkN, bottomRow)
+                ^ hashRows(chunks, cellKeys_, width_, Board.checkN, bottomRow);
+
+        return new ImmutableBoard(width_, height_, chunks, findColumnTops(chunks, width_, height_), linesCleared,
+                cellKeys_, hash);
+
+    }
+
+
+    /* Read a row from a set of chunks */
+    private static long readRow(long[][] chunks, int yPos) {
+
+        return chunks[yPos >>> CHUNK_SHIFT][yPos & CHUNK_MASK];
+
+    }
+
+
+    /* XOR together the cell keys of every block on rows firstRow -> lastRow (inclusive) */
+    private static long hashRows(long[][] chunks, long[] cellKeys, int width, int firstRow, int lastRow) {
+
+        long hash = 0;
+        for (int eachRow = firstRow; eachRow <= lastRow; eachRow++)
+            hash ^= Zobrist.hashRow(cellKeys, eachRow * width, readRow(chunks, eachRow));
+
+        return hash;
+
+    }
+
+
+    /* Work out the top block of every column, from the top of the board down */
+    private static int[] findColumnTops(long[][] chunks, int width, int height) {
+
+        int[] columnTop = new int[width];
+        Arrays.fill(columnTop, height);
+
+        long allColumns = (width == 64) ? -1L : (1L << width) - 1;
+        long seen = 0;
+
+        for (int eachRow = 0; eachRow < height && seen != allColumns; eachRow++) {
+
+            long newColumns = readRow(chunks, eachRow) & ~seen;
+
+            for (long eachBit = newColumns; eachBit != 0; eachBit &= eachBit - 1)
+                columnTop[Long.numberOfTrailingZeros(eachBit)] = eachRow;
+
+            seen |= newColumns;
+
+        }
+
+        return columnTop;
+
+    }
+
+
+    /* Rows are packed into one long each */
+    private static void checkSize(int width, int height) {
+
+        if (width < 1 || width > 64 || height < 1)
+            throw new IllegalArgumentException("ImmutableBoard must be 1 -> 64 wide, not " + width);
+
+    }
+
+
+    /** PROFILE: the same measures as BoardProfile gives for a Board **/
+
+    /* Get the row of the top block in a column (the board height if the column is empty) */
+    public int getColumnTop(int column) {
+
+        return columnTop_[column];
+
+    }
+
+
+    /* Get the height of a column: the number of rows from its top block to the bottom of the board */
+    public int getColumnHeight(int column) {
+
+        return height_ - columnTop_[column];
+
+    }
+
+
+    /* Get the height of the tallest column */
+    public int getMaxHeight() {
+
+        int maxHeight = 0;
+        for (int eachColumn = 0; eachColumn < width_; eachColumn++)
+            maxHeight = Math.max(maxHeight, height_ - columnTop_[eachColumn]);
+
+        return maxHeight;
+
+    }
+
+
+    /* Get the sum of all the column heights */
+    public int getAggregateHeight() {
+
+        int aggregateHeight = 0;
+        for (int eachColumn = 0; eachColumn < width_; eachColumn++) aggregateHeight += height_ - columnTop_[eachColumn];
+
+        return aggregateHeight;
+
+    }
+
+
+    /* Get the sum of the height differences between neighbouring columns */
+    public int getBumpiness() {
+
+        int bumpiness = 0;
+        for (int eachColumn = 0; eachColumn < width_ - 1; eachColumn++)
+            bumpiness += Math.abs(columnTop_[eachColumn] - columnTop_[eachColumn + 1]);
+
+        return bumpiness;
+
+    }
+
+
+    /* Get the number of empty cells that have a block somewhere above them: one pass down the rows */
+    public int getHoles() {
+
+        int holes = 0;
+        long covered = 0;
+
+        for (int eachRow = 0; eachRow < height_; eachRow++) {
+            long rowBits = getRow(eachRow);
+            holes += Long.bitCount(covered & ~rowBits);
+            covered |= rowBits;
+        }
+
+        return holes;
+
+    }
+
+
+    /* Check whether anything is lodged as high as Board.checkN: the game would be over */
+    public boolean isToppedOut() {
+
+        return Board.isToppedOut(getMaxHeight(), height_);
+
+    }
+
+}
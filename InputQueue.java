@@ -0,0 +1,121 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class carries input from the window to the game.
+ *
+ * It is a fixed size ring of timestamped events with exactly one
+ * producer (the Swing event thread) and one consumer (the game's own
+ * thread), so it needs no locks: the producer only ever moves the tail,
+ * the consumer only ever moves the head, and each publishes its move with
+ * a release write that the other reads.  Offering an event wakes the
+ * consumer if it is parked waiting for something to do.
+ *
+ * Each event is stamped with System.nanoTime() when it is offered, so the
+ * game can tell exactly how long every input waited before it was applied.
+ *
+ */
+
+public class InputQueue {
+
+    /* The ring: times and events, side by side */
+    private final long[] times_;
+    private final int[] events_;
+    private final int mask_;
+
+    /* Next slot to read (moved by the consumer) and next slot to write (moved by the producer) */
+    private final AtomicLong head_ = new AtomicLong();
+    private final AtomicLong tail_ = new AtomicLong();
+
+    /* The producer's last sight of the head, so it rarely has to read the consumer's counter */
+    private long cachedHead_;
+
+    /* The thread taking events off the queue, woken when one arrives */
+    private volatile Thread consumer_;
+
+
+    /** CONSTRUCTOR **/
+    public InputQueue(int capacity) {
+
+        /* Round the capacity up to a power of two */
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+
+        times_ = new long[size];
+        events_ = new int[size];
+        mask_ = size - 1;
+
+    }
+
+
+    /** METHODS **/
+
+    /* Set the thread that takes events off the queue */
+    public void setConsumer(Thread thisThread) {
+
+        consumer_ = thisThread;
+
+    }
+
+
+    /* PRODUCER: add an event, stamped with the time now.  Returns false (dropping it) if the queue is full */
+    public boolean offer(int event) {
+
+        long tail = tail_.get();
+
+        if (tail - cachedHead_ > mask_) {
+            cachedHead_ = head_.get();
+            if (tail - cachedHead_ > mask_) return false;
+        }
+
+        int slot = (int) (tail & mask_);
+        times_[slot] = System.nanoTime();
+        events_[slot] = event;
+
+        /* Publish the event to the consumer */
+        tail_.lazySet(tail + 1);
+
+        Thread wake = consumer_;
+        if (wake != null) LockSupport.unpark(wake);
+
+        return true;
+
+    }
+
+
+    /* CONSUMER: check whether there are any events waiting */
+    public boolean isEmpty() {
+
+        return head_.get() == tail_.get();
+
+    }
+
+
+    /* CONSUMER: get the oldest event waiting (only when not empty) */
+    public int peekEvent() {
+
+        return events_[(int) (head_.get() & mask_)];
+
+    }
+
+
+    /* CONSUMER: get the time the oldest event waiting was offered (only when not empty) */
+    public long peekTime() {
+
+        return times_[(int) (head_.get() & mask_)];
+
+    }
+
+
+    /* CONSUMER: drop the oldest event, once it has been dealt with */
+    public void remove() {
+
+        head_.lazySet(head_.get() + 1);
+
+    }
+
+}
@@ -0,0 +1,214 @@
+package game;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class works out the auto-repeat for keys the player holds down:
+ * moving left and right, and soft dropping.
+ *
+ * Held keys are kept as a bitmask of GameInput flags.  Pressing a move
+ * key moves the piece once straight away; if it is still held after the
+ * delayed auto-shift (DAS), the move repeats at the auto-repeat rate (ARR).
+ * If both move keys are held, the one pressed last wins; let it go and the
+ * other takes over.  Soft drop repeats at its own rate from the first press.
+ *
+ * An ARR of 0 means the piece shifts all the way to the wall at once, and
+ * the shift is then "charged": it has no deadline of its own, and the game
+ * slides the piece to the wall again whenever something else moves it (or
+ * a new piece comes on), until a key goes up or down.
+ *
+ * Everything runs on System.nanoTime(), and is only touched by the game
+ * loop: the loop asks what is due each time round, and parks until
+ * nextDueAt() when nothing is.  So there are no timers and nothing is
+ * allocated per key press.
+ *
+ */
+
+public class InputRepeater {
+
+    /* Defaults: the 120ms repeat the window has always used */
+    public static final long DEFAULT_DAS = 120000000L;
+    public static final long DEFAULT_ARR = 120000000L;
+
+    /* Keys held (GameInput.MOVE_LEFT, MOVE_RIGHT and SOFT_DROP) */
+    private int heldKeys_;
+
+    /* The move key currently repeating (GameInput.NONE for neither) */
+    private int shiftKey_;
+
+    /* Delay before a move repeats, time between repeats and time between soft drops */
+    private long das_ = DEFAULT_DAS;
+    private long arr_ = DEFAULT_ARR;
+    private long softDropRate_ = 100000000L;
+
+    /* When the next move and the next soft drop are due */
+    private long nextShiftAt_;
+    private long nextDropAt_;
+
+    /* With no repeat delay, set once the shift has gone to the wall: there is nothing more to wait for */
+    private boolean shiftCharged_;
+
+
+    /** METHODS **/
+
+    /* Set the delayed auto-shift, in nanoseconds */
+    public void setAutoShiftDelay(long setTo) {
+
+        das_ = Math.max(setTo, 0);
+
+    }
+
+
+    /* Set the auto-repeat rate, in nanoseconds between moves (0 shifts straight to the wall) */
+    public void setAutoRepeatRate(long setTo) {
+
+        arr_ = Math.max(setTo, 0);
+
+    }
+
+
+    /* Set the time between soft drops, in nanoseconds */
+    public void setSoftDropRate(long setTo) {
+
+        softDropRate_ = Math.max(setTo, 1);
+
+    }
+
+
+    /* Check whether a move that comes due should shift all the way to the wall */
+    public boolean isInstantShift() {
+
+        return arr_ == 0;
+
+    }
+
+
+    /* Check whether a key is held */
+    public boolean isHeld(int key) {
+
+        return (heldKeys_ & key) != 0;
+
+    }
+
+
+    /* A key has gone down: returns the input to apply straight away (GameInput.NONE if it was already down) */
+    public int keyDown(int key, long now) {
+
+        if ((heldKeys_ & key) != 0) return GameInput.NONE;
+
+        heldKeys_ |= key;
+
+        if (key == GameInput.SOFT_DROP) {
+            nextDropAt_ = now + softDropRate_;
+            return key;
+        }
+
+        /* The move key pressed last takes over the repeat */
+        shiftKey_ = key;
+        shiftCharged_ = false;
+        nextShiftAt_ = now + das_;
+        return key;
+
+    }
+
+
+    /* A key has come up: returns the input to apply straight away (the other move key, if it takes over) */
+    public int keyUp(int key, long now) {
+
+        if ((heldKeys_ & key) == 0) return GameInput.NONE;
+
+        heldKeys_ &= ~key;
+
+        if (key != shiftKey_) return GameInput.NONE;
+
+        /* Hand the repeat back to the other move key, if it is still held */
+        shiftKey_ = heldKeys_ & (GameInput.MOVE_LEFT | GameInput.MOVE_RIGHT);
+        shiftCharged_ = false;
+        if (shiftKey_ == GameInput.NONE) return GameInput.NONE;
+
+        nextShiftAt_ = now + das_;
+        return shiftKey_;
+
+    }
+
+
+    /* Let go of every key */
+    public void releaseAll() {
+
+        heldKeys_ = 0;
+        shiftKey_ = GameInput.NONE;
+        shiftCharged_ = false;
+
+    }
+
+
+    /* Start the repeat delays again from now (e.g. when the game is unpaused) */
+    public void restartDelays(long now) {
+
+        nextShiftAt_ = now + das_;
+        nextDropAt_ = now + softDropRate_;
+        shiftCharged_ = false;
+
+    }
+
+
+    /*
+     * Get the repeats due at the given time, as GameInput flags, and move on their deadlines.
+     * Call again until it returns GameInput.NONE.  If the loop has fallen well behind, missed
+     * repeats are dropped rather than all played at once.
+     */
+    public int dueInputs(long now) {
+
+        int due = GameInput.NONE;
+
+        if (isShiftWaiting() && now - nextShiftAt_ >= 0) {
+            due |= shiftKey_;
+            if (arr_ == 0) shiftCharged_ = true;
+            else nextShiftAt_ = (now - nextShiftAt_ > arr_) ? now + arr_ : nextShiftAt_ + arr_;
+        }
+
+        if ((heldKeys_ & GameInput.SOFT_DROP) != 0 && now - nextDropAt_ >= 0) {
+            due |= GameInput.SOFT_DROP;
+            nextDropAt_ = (now - nextDropAt_ > softDropRate_) ? now + softDropRate_ : nextDropAt_ + softDropRate_;
+        }
+
+        return due;
+
+    }
+
+
+    /* Get the move key whose shift has gone to the wall with no repeat delay (GameInput.NONE if none) */
+    public int getChargedShift() {
+
+        return shiftCharged_ ? shiftKey_ : GameInput.NONE;
+
+    }
+
+
+    /* Check whether a move key is waiting for its next shift */
+    private boolean isShiftWaiting() {
+
+        return shiftKey_ != GameInput.NONE && !shiftCharged_;
+
+    }
+
+
+    /* Check whether any repeat is waiting to come due */
+    public boolean hasDeadline() {
+
+        return isShiftWaiting() || (heldKeys_ & GameInput.SOFT_DROP) != 0;
+
+    }
+
+
+    /* Get when the next repeat comes due (only when hasDeadline()) */
+    public long nextDueAt() {
+
+        if (!isShiftWaiting()) return nextDropAt_;
+        if ((heldKeys_ & GameInput.SOFT_DROP) == 0) return nextShiftAt_;
+        return (nextShiftAt_ - nextDropAt_ < 0) ? nextShiftAt_ : nextDropAt_;
+
+    }
+
+}
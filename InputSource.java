@@ -0,0 +1,21 @@
+package game;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This interface supplies the inputs for a Game that is run without a
+ * window, e.g. by a GameHost.  Before each tick the source is asked for
+ * the GameInput flags to apply along with the tick's own gravity.
+ *
+ */
+
+public interface InputSource {
+
+    /*
+     * Return the GameInput flags to apply on the next step of this game
+     * (GameInput.NONE for none).
+     */
+    public int nextInputs(Game thisGame);
+
+}
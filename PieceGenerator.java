@@ -0,0 +1,246 @@
+package game;
+
+import java.nio.ByteBuffer;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class deals the pieces for a Game: the shape of each piece, and
+ * the column it comes onto the board at.
+ *
+ * A generator is seeded once, so the same seed always deals the same
+ * pieces in the same order.  That is what lets a game be replayed, or two
+ * players (or bots) be given exactly the same pieces.  Pieces are worked
+ * out in batches ahead of time, so the Game can look as far ahead as it
+ * likes (up to BATCH_SIZE pieces) without rolling anything.
+ *
+ * Subclasses only decide which shape comes next; the column is always
+ * uniform across the spawn range.
+ *
+ */
+
+public abstract class PieceGenerator {
+
+    /* Types of generator, as stored in replays */
+    public static final int UNIFORM = 0;
+    public static final int BAG = 1;
+    public static final int HISTORY = 2;
+
+    /* Number of pieces worked out at a time (and so the furthest the Game can look ahead) */
+    public static final int BATCH_SIZE = 64;
+
+    /* Number of different shapes */
+    protected static final int NUM_SHAPES = Shape.values().length;
+
+    /* Shapes, for turning an ordinal back into a Shape */
+    private static final Shape[] SHAPES = Shape.values();
+
+    /* The seed, and the random numbers it gives */
+    private long seed_;
+    protected Xoshiro256 random_;
+
+    /* Range of base columns a piece may come on at */
+    private int minX_ = 3;
+    private int maxX_ = 7;
+
+    /* Pieces worked out but not yet dealt: a ring of BATCH_SIZE */
+    private int[] queueShapes_ = new int[BATCH_SIZE];
+    private int[] queueX_ = new int[BATCH_SIZE];
+    private int queueHead_;
+    private int queueCount_;
+
+    /* Number of pieces dealt since the start */
+    private long dealt_;
+
+
+    /** CONSTRUCTOR **/
+    protected PieceGenerator(long seed) {
+
+        seed_ = seed;
+        random_ = new Xoshiro256(seed);
+
+    }
+
+
+    /* Build a generator of the given type */
+    public static PieceGenerator create(int type, long seed) {
+
+        switch (type) {
+        case BAG:
+            return new BagGenerator(seed);
+        case HISTORY:
+            return new HistoryGenerator(seed);
+        default:
+            return new UniformGenerator(seed);
+        }
+
+    }
+
+
+    /** METHODS **/
+
+    /* Get the type of this generator (UNIFORM, BAG or HISTORY) */
+    public abstract int getType();
+
+    /* Roll the ordinal of the next shape */
+    protected abstract int rollShape();
+
+    /* Put any state the subclass keeps back to how it was at the start */
+    protected abstract void resetShapes();
+
+    /* Write / take back any state the subclass keeps (for snapshots) */
+    protected abstract void saveShapes(ByteBuffer snapshot);
+    protected abstract void restoreShapes(ByteBuffer snapshot);
+
+
+    /* Set the range of base columns pieces come on at, and start dealing again from the start */
+    public void setSpawnRange(int minX, int maxX) {
+
+        minX_ = minX;
+        maxX_ = Math.max(minX, maxX);
+        reset();
+
+    }
+
+
+    /* Start dealing again from the start of the seed */
+    public void reset() {
+
+        random_.setSeed(seed_);
+        resetShapes();
+        queueHead_ = 0;
+        queueCount_ = 0;
+        dealt_ = 0;
+
+    }
+
+
+    /* Change the seed, and start dealing again from its start */
+    public void setSeed(long seed) {
+
+        seed_ = seed;
+        reset();
+
+    }
+
+
+    /* Start dealing again from a given number of pieces into the seed (as when restoring a game) */
+    public void restore(long piecesDealt) {
+
+        reset();
+        for (long eachPiece = 0; eachPiece < piecesDealt; eachPiece++) advance();
+
+    }
+
+
+    /* Get the shape of a piece still to come: 0 is the next one */
+    public Shape peekShape(int ahead) {
+
+        fillTo(ahead);
+        return SHAPES[queueShapes_[(queueHead_ + ahead) % BATCH_SIZE]];
+
+    }
+
+
+    /* Get the base column of a piece still to come: 0 is the next one */
+    public int peekSpawnX(int ahead) {
+
+        fillTo(ahead);
+        return queueX_[(queueHead_ + ahead) % BATCH_SIZE];
+
+    }
+
+
+    /* Deal the next piece: the one after it becomes the next */
+    public void advance() {
+
+        fillTo(0);
+        queueHead_ = (queueHead_ + 1) % BATCH_SIZE;
+        queueCount_--;
+        dealt_++;
+
+    }
+
+
+    /* Write the whole state of the generator to a snapshot: random numbers, pieces queued and pieces dealt */
+    public void saveState(ByteBuffer snapshot) {
+
+        random_.saveState(snapshot);
+        snapshot.putInt(minX_);
+        snapshot.putInt(maxX_);
+
+        /* The queue, oldest first */
+        snapshot.putInt(queueCount_);
+        for (int eachPiece = 0; eachPiece < queueCount_; eachPiece++) {
+            int slot = (queueHead_ + eachPiece) % BATCH_SIZE;
+            snapshot.put((byte) queueShapes_[slot]);
+            snapshot.putInt(queueX_[slot]);
+        }
+
+        snapshot.putLong(dealt_);
+        saveShapes(snapshot);
+
+    }
+
+
+    /* Take on the state written by saveState() (by a generator of the same type and seed) */
+    public void restoreState(ByteBuffer snapshot) {
+
+        random_.restoreState(snapshot);
+        minX_ = snapshot.getInt();
+        maxX_ = snapshot.getInt();
+
+        queueHead_ = 0;
+        queueCount_ = snapshot.getInt();
+        for (int eachPiece = 0; eachPiece < queueCount_; eachPiece++) {
+            queueShapes_[eachPiece] = snapshot.get();
+            queueX_[eachPiece] = snapshot.getInt();
+        }
+
+        dealt_ = snapshot.getLong();
+        restoreShapes(snapshot);
+
+    }
+
+
+    /* Get the most bytes saveState() can write */
+    public static int getStateSize() {
+
+        return 32 + 8 + 4 + BATCH_SIZE * 5 + 8 + 64;
+
+    }
+
+
+    /* Get the seed */
+    public long getSeed() {
+
+        return seed_;
+
+    }
+
+
+    /* Get the number of pieces dealt since the start */
+    public long getPiecesDealt() {
+
+        return dealt_;
+
+    }
+
+
+    /* Make sure the queue reaches at least 'ahead' pieces in: if not, fill it right up */
+    private void fillTo(int ahead) {
+
+        if (ahead < queueCount_) return;
+
+        int spawnRange = maxX_ - minX_ + 1;
+        while (queueCount_ < BATCH_SIZE) {
+            int tail = (queueHead_ + queueCount_) % BATCH_SIZE;
+            queueX_[tail] = minX_ + random_.nextInt(spawnRange);
+            queueShapes_[tail] = rollShape();
+            queueCount_++;
+        }
+
+    }
+
+}
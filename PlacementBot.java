@@ -0,0 +1,619 @@
+package game;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class is a bot that plays a Game: it supplies the inputs for each
+ * step, which the game applies to the piece through TetradMotion just as
+ * it does a player's.
+ *
+ * When a new piece comes on, the bot works out every placement it can
+ * reach for it, places each one on an ImmutableBoard, and for each of
+ * those tries every placement of the next piece too.  On a stack with no
+ * holes, and clear rows between it and the spawn row, that is every
+ * distinct orientation in every column, dropped straight down; otherwise
+ * a Reachability search finds them, tucks and spins under overhangs
+ * included.  Each board reached is scored by a BoardEvaluator,
+ * and the bot steers for the placement of the current piece that leads to
+ * the best board.
+ *
+ * The candidates are scored in parallel on a ForkJoinPool, split in half
+ * until each task holds only a couple.  The whole decision has a time
+ * budget: if it runs out before the next piece has been tried for every
+ * candidate, the bot goes on the current piece alone.
+ *
+ * Steering follows the fewest inputs that reach the placement: looked up
+ * in the FinesseTable when a new piece can drop straight there over clear
+ * rows, or found by a Reachability search.  Each step sends as many of the inputs as the game
+ * applies in the order they come (so a turn then a move go together, a
+ * move then a turn don't).  If the piece isn't where those inputs should
+ * have put it, or the route has soft drops (which gravity throws out), the
+ * bot finds the way again from where the piece is.
+ *
+ */
+
+public class PlacementBot implements InputSource {
+
+    /* Default time allowed to decide where each piece goes */
+    public static final long DEFAULT_TIME_BUDGET = 10000000L; // 10ms
+
+    /* Returned by choosePlacement() when the piece cannot be placed anywhere */
+    public static final int NO_PLACEMENT = -1;
+
+    /* Most placements a piece can have: four orientations in each of up to 64 columns */
+    public static final int MAX_PLACEMENTS = 4 * 64;
+
+    /* Candidates below this many are scored on one thread rather than split further */
+    private static final int SPLIT_THRESHOLD = 2;
+
+    /* Rows below the spawn row that must be empty for pieces to get anywhere over the stack */
+    private static final int CLEAR_ROWS = 5;
+
+    /* Each thread's search for placements on stacks with holes or without clear rows */
+    private static final ThreadLocal<Reachability> REACHABILITY = ThreadLocal.withInitial(Reachability::new);
+
+    /* For each Shape, the orientations (0 -> 3) that differ from every one before them */
+    private static final int[][] DISTINCT_ORIENTATIONS = findDistinctOrientations();
+
+    /* How boards are scored, and the pool they are scored on */
+    private final BoardEvaluator evaluator_;
+    private final ForkJoinPool pool_;
+
+    /* Time allowed for each decision, in nanoseconds */
+    private long timeBudget_ = DEFAULT_TIME_BUDGET;
+
+    /* The piece being steered, the board it is steered over, and the placement it is going to */
+    private Tetrad steering_;
+    private ImmutableBoard steeringBoard_;
+    private int target_;
+
+    /* The inputs that take it there, how many are sent, and whether to find the way again every step */
+    private int[] route_ = new int[Byte.MAX_VALUE];
+    private int routeLength_;
+    private int routeSent_;
+    private boolean replanEachStep_;
+
+    /* Where the piece should be once the inputs sent so far have been applied */
+    private int expectedOrientation_;
+    private int expectedX_;
+
+    /* The row the piece was on when a soft drop was held back for gravity, if one was */
+    private int heldAtY_;
+
+    /* Finds the way to the placement when the FinesseTable can't */
+    private final Reachability steeringSearch_ = new Reachability();
+    private int[] steeringPlacements_ = new int[MAX_PLACEMENTS];
+
+    /* The placements of the piece being decided, scored on the piece alone and with the next piece */
+    private int[] candidates_ = new int[MAX_PLACEMENTS];
+    private double[] pieceScores_ = new double[MAX_PLACEMENTS];
+    private double[] lookaheadScores_ = new double[MAX_PLACEMENTS];
+
+    /* Decisions made, how long they took, boards scored, and decisions the budget cut short */
+    private long decisions_;
+    private long totalDecisionTime_;
+    private long maxDecisionTime_;
+    private long boardsEvaluated_;
+    private long cutShort_;
+
+
+    /** CONSTRUCTOR **/
+    public PlacementBot() {
+
+        this(new BoardEvaluator(), ForkJoinPool.commonPool());
+
+    }
+
+
+    /** CONSTRUCTOR **/
+    public PlacementBot(BoardEvaluator thisEvaluator, ForkJoinPool thisPool) {
+
+        evaluator_ = thisEvaluator;
+        pool_ = thisPool;
+
+    }
+
+
+    /** METHODS **/
+
+    /* Set the time allowed to decide where each piece goes, in nanoseconds */
+    public void setTimeBudget(long setTo) {
+
+        timeBudget_ = Math.max(setTo, 0);
+
+    }
+
+
+    /* Get the time allowed to decide where each piece goes, in nanoseconds */
+    public long getTimeBudget() {
+
+        return timeBudget_;
+
+    }
+
+
+    /* Decide on a placement for each new piece, then steer it there one step at a time */
+    public int nextInputs(Game thisGame) {
+
+        Tetrad thisPiece = thisGame.getCurrentPiece();
+
+        if (thisPiece == null || thisPiece.lodged_ || thisGame.isAwaitingEntry() || thisGame.isGameOver())
+            return GameInput.NONE;
+
+        if (thisPiece != steering_) {
+
+            decide(thisGame, thisPiece);
+
+        } else if (replanEachStep_ || thisPiece.getOrientation() % 4 != expectedOrientation_
+                || thisPiece.getBaseX() != expectedX_) {
+
+            /* Off course, or on a route whose soft drops gravity throws out: find the way from here */
+            planRoute(thisPiece);
+
+        }
+
+        return nextStep(thisPiece);
+
+    }
+
+
+    /* Choose where a new piece is going, and the way there */
+    private void decide(Game thisGame, Tetrad thisPiece) {
+
+        steering_ = thisPiece;
+        steeringBoard_ = ImmutableBoard.from(thisGame.getBoard(), thisPiece);
+        heldAtY_ = Integer.MIN_VALUE;
+
+        Shape thisShape = thisPiece.getShape();
+
+        target_ = choosePlacement(steeringBoard_, thisShape, thisPiece.getBaseX(), thisPiece.getBaseY(),
+                thisGame.getNextPiece(), thisGame.getPieceGenerator().peekSpawnX(0));
+
+        /* A new piece dropping straight down over clear rows goes just as it would on an empty board */
+        if (target_ != NO_PLACEMENT && thisPiece.getOrientation() == 0 && thisPiece.getBaseY() == Game.SPAWN_ROW
+                && hasClearRows(steeringBoard_) && steeringBoard_.getDropY(thisShape, placementOrientation(target_),
+                        placementX(target_)) == placementY(target_)) {
+
+            routeLength_ = FinesseTable.forBoard(steeringBoard_.getWidth(), steeringBoard_.getHeight())
+                    .getInputs(thisShape, thisPiece.getBaseX(), placementOrientation(target_), placementX(target_), route_);
+
+            if (routeLength_ != FinesseTable.UNREACHABLE) {
+                startRoute(thisPiece, false);
+                return;
+            }
+
+        }
+
+        planRoute(thisPiece);
+
+    }
+
+
+    /* Search for the way from where the piece is to its placement (dropping it here if there is none) */
+    private void planRoute(Tetrad thisPiece) {
+
+        Shape thisShape = thisPiece.getShape();
+
+        int numFound = (target_ == NO_PLACEMENT) ? 0 : steeringSearch_.search(steeringBoard_, thisShape,
+                thisPiece.getBaseX(), thisPiece.getBaseY(), thisPiece.getOrientation(), steeringPlacements_);
+
+        /* The search lists each set of cells once, under whichever orientation reaches it soonest */
+        int targetOrientation = placementOrientation(target_);
+        int canonical = thisShape.getCanonicalOrientation(targetOrientation);
+        int left = placementX(target_) + thisShape.getMinX(targetOrientation);
+        int top = placementY(target_) + thisShape.getMinY(targetOrientation);
+
+        for (int eachFound = 0; eachFound < numFound; eachFound++) {
+
+            int orientation = placementOrientation(steeringPlacements_[eachFound]);
+
+            if (thisShape.getCanonicalOrientation(orientation) == canonical
+                    && placementX(steeringPlacements_[eachFound]) + thisShape.getMinX(orientation) == left
+                    && placementY(steeringPlacements_[eachFound]) + thisShape.getMinY(orientation) == top) {
+
+                if (route_.length < steeringSearch_.getInputCount(eachFound))
+                    route_ = new int[steeringSearch_.getInputCount(eachFound)];
+
+                routeLength_ = steeringSearch_.getInputs(eachFound, route_);
+                startRoute(thisPiece, true);
+                return;
+
+            }
+
+        }
+
+        /* Nowhere to go (or no way there any more): drop it as it is */
+        route_[0] = GameInput.HARD_DROP;
+        routeLength_ = 1;
+        startRoute(thisPiece, false);
+
+    }
+
+
+    /* Start sending a new route for a piece from where it is now */
+    private void startRoute(Tetrad thisPiece, boolean searched) {
+
+        routeSent_ = 0;
+        replanEachStep_ = false;
+
+        if (searched) {
+            for (int eachInput = 0; eachInput < routeLength_; eachInput++)
+                if (route_[eachInput] == GameInput.SOFT_DROP) replanEachStep_ = true;
+        }
+
+        expectedOrientation_ = thisPiece.getOrientation() % 4;
+        expectedX_ = thisPiece.getBaseX();
+
+    }
+
+
+    /*
+     * Send the next inputs of the route: as many as the game applies in the order they come, a
+     * step applying turns, then moves, then drops.  Notes where they should leave the piece.
+     */
+    private int nextStep(Tetrad thisPiece) {
+
+        Shape thisShape = thisPiece.getShape();
+        int orientation = thisPiece.getOrientation() % 4;
+        int baseX = thisPiece.getBaseX();
+        int baseY = thisPiece.getBaseY();
+
+        /* Each input is a single bit, and a step applies them lowest bit first */
+        int inputs = GameInput.NONE;
+
+        while (routeSent_ < routeLength_ && route_[routeSent_] > inputs) {
+
+            int input = route_[routeSent_];
+
+            if (input == GameInput.HARD_DROP) {
+                inputs |= input;
+                routeSent_++;
+                break;
+            }
+
+            int moved = Reachability.applyInput(steeringBoard_, thisShape, orientation, baseX, baseY, input);
+
+            /*
+             * A soft drop that lands the piece, with gravity after it in the same step, lodges it
+             * before it can be tucked: leave the last row to gravity (unless gravity isn't moving it)
+             */
+            if (input == GameInput.SOFT_DROP && routeSent_ + 1 < routeLength_
+                    && route_[routeSent_ + 1] != GameInput.HARD_DROP && heldAtY_ != thisPiece.getBaseY()
+                    && steeringBoard_.collides(thisShape, placementOrientation(moved), placementX(moved),
+                            placementY(moved) + 1)) {
+                heldAtY_ = thisPiece.getBaseY();
+                break;
+            }
+
+            inputs |= input;
+            routeSent_++;
+
+            orientation = placementOrientation(moved);
+            baseX = placementX(moved);
+            baseY = placementY(moved);
+
+        }
+
+        /* Run out of route without dropping: drop it here */
+        if (inputs == GameInput.NONE && routeSent_ == routeLength_) inputs = GameInput.HARD_DROP;
+
+        expectedOrientation_ = orientation;
+        expectedX_ = baseX;
+
+        return inputs;
+
+    }
+
+
+    /*
+     * Choose the placement of a piece (with its base at (fromX, fromY)) that leads to the best
+     * board, trying every placement of the next piece (null if not known, which comes on with its
+     * base at (nextFromX, Game.SPAWN_ROW)) on each.  Returns NO_PLACEMENT if there is none.
+     */
+    public int choosePlacement(ImmutableBoard thisBoard, Shape thisShape, int fromX, int fromY, Shape nextShape,
+            int nextFromX) {
+
+        long startTime = System.nanoTime();
+
+        int numCandidates = findReachable(thisBoard, thisShape, fromX, fromY, candidates_);
+        if (numCandidates == 0) return NO_PLACEMENT;
+
+        long scored = pool_.invoke(new ScoreCandidates(thisBoard, thisShape, nextShape, nextFromX, 0,
+                numCandidates, startTime + timeBudget_));
+
+        /* Go on the lookahead only if every candidate got one: otherwise the scores don't compare */
+        double[] scores = lookaheadScores_;
+        for (int eachCandidate = 0; eachCandidate < numCandidates; eachCandidate++) {
+            if (Double.isNaN(lookaheadScores_[eachCandidate])) {
+                scores = pieceScores_;
+                cutShort_++;
+                break;
+            }
+        }
+
+        int best = 0;
+        for (int eachCandidate = 1; eachCandidate < numCandidates; eachCandidate++)
+            if (scores[eachCandidate] > scores[best]) best = eachCandidate;
+
+        recordDecision(startTime, scored);
+
+        return candidates_[best];
+
+    }
+
+
+    /* Add a decision that started at startTime (and scored boardsScored boards) to the statistics */
+    protected void recordDecision(long startTime, long boardsScored) {
+
+        long decisionTime = System.nanoTime() - startTime;
+
+        decisions_++;
+        totalDecisionTime_ += decisionTime;
+        if (decisionTime > maxDecisionTime_) maxDecisionTime_ = decisionTime;
+        boardsEvaluated_ += boardsScored;
+
+    }
+
+
+    /* Get the evaluator boards are scored by */
+    protected BoardEvaluator getEvaluator() {
+
+        return evaluator_;
+
+    }
+
+
+    /*
+     * Score a range of candidates: split in half until small enough to score on this thread.
+     * Returns the number of boards scored.
+     */
+    private class ScoreCandidates extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private ImmutableBoard board_;
+        private Shape shape_, nextShape_;
+        private int nextFromX_;
+        private int from_, to_;
+        private long deadline_;
+
+        ScoreCandidates(ImmutableBoard thisBoard, Shape thisShape, Shape nextShape, int nextFromX, int from, int to,
+                long deadline) {
+
+            board_ = thisBoard;
+            shape_ = thisShape;
+            nextShape_ = nextShape;
+            nextFromX_ = nextFromX;
+            from_ = from;
+            to_ = to;
+            deadline_ = deadline;
+
+        }
+
+        protected Long compute() {
+
+            if (to_ - from_ > SPLIT_THRESHOLD) {
+
+                int middle = (from_ + to_) >>> 1;
+                ScoreCandidates upper = new ScoreCandidates(board_, shape_, nextShape_, nextFromX_, middle, to_, deadline_);
+                upper.fork();
+
+                long scored = new ScoreCandidates(board_, shape_, nextShape_, nextFromX_, from_, middle, deadline_).compute();
+                return scored + upper.join();
+
+            }
+
+            long scored = 0;
+            int[] nextPlacements = null;
+
+            for (int eachCandidate = from_; eachCandidate < to_; eachCandidate++) {
+
+                int placement = candidates_[eachCandidate];
+                ImmutableBoard child = board_.place(shape_, placementOrientation(placement), placementX(placement),
+                        placementY(placement));
+
+                pieceScores_[eachCandidate] = evaluator_.evaluate(child, child.getLinesCleared());
+                scored++;
+
+                if (nextShape_ == null || child.isToppedOut()) {
+                    lookaheadScores_[eachCandidate] = pieceScores_[eachCandidate];
+                    continue;
+                }
+
+                /* Out of time: leave the lookahead for this one undone */
+                if (System.nanoTime() - deadline_ > 0) {
+                    lookaheadScores_[eachCandidate] = Double.NaN;
+                    continue;
+                }
+
+                if (nextPlacements == null) nextPlacements = new int[MAX_PLACEMENTS];
+                int numNext = findReachable(child, nextShape_, nextFromX_, Game.SPAWN_ROW, nextPlacements);
+
+                /* No room for the next piece means the game ends */
+                double best = BoardEvaluator.LOSS;
+
+                for (int eachNext = 0; eachNext < numNext; eachNext++) {
+
+                    ImmutableBoard grandchild = child.place(nextShape_, placementOrientation(nextPlacements[eachNext]),
+                            placementX(nextPlacements[eachNext]), placementY(nextPlacements[eachNext]));
+
+                    best = Math.max(best, evaluator_.evaluate(grandchild,
+                            child.getLinesCleared() + grandchild.getLinesCleared()));
+                    scored++;
+
+                }
+
+                lookaheadScores_[eachCandidate] = best;
+
+            }
+
+            return scored;
+
+        }
+
+    }
+
+
+    /*
+     * Find every placement a new piece (orientation 0) can reach from its base at (fromX, fromY).
+     * Over clear rows a search need only start from just above the stack, and with no holes
+     * either dropping straight down reaches them all; otherwise search from the piece.  Fills
+     * placements (packed by packPlacement()) and returns the number found.
+     */
+    public static int findReachable(ImmutableBoard thisBoard, Shape thisShape, int fromX, int fromY,
+            int[] placements) {
+
+        if (!hasClearRows(thisBoard)) return REACHABILITY.get().search(thisBoard, thisShape, fromX, fromY, 0, placements);
+
+        if (thisBoard.getHoles() == 0) return findPlacements(thisBoard, thisShape, fromY, placements);
+
+        return REACHABILITY.get().searchFromClearRows(thisBoard, thisShape, placements);
+
+    }
+
+
+    /* Check whether there are clear rows between the stack and the spawn row, for pieces to get anywhere over it */
+    public static boolean hasClearRows(ImmutableBoard thisBoard) {
+
+        return thisBoard.getMaxHeight() <= thisBoard.getHeight() - Game.SPAWN_ROW - CLEAR_ROWS;
+
+    }
+
+
+    /*
+     * Find the placements a shape reaches on a stack with no holes and clear rows above it, with
+     * its base on row fromY: the piece can turn and move freely there, so that is each distinct
+     * orientation, at every column it fits on the row, dropped straight down.  Fills placements (packed by packPlacement())
+     * and returns the number found.
+     */
+    public static int findPlacements(ImmutableBoard thisBoard, Shape thisShape, int fromY, int[] placements) {
+
+        int numPlacements = 0;
+
+        for (int orientation : DISTINCT_ORIENTATIONS[thisShape.ordinal()]) {
+
+            int firstX = -thisShape.getMinX(orientation);
+            int lastX = thisBoard.getWidth() - 1 - thisShape.getMaxX(orientation);
+
+            for (int baseX = firstX; baseX <= lastX; baseX++)
+                if (!thisBoard.collides(thisShape, orientation, baseX, fromY))
+                    numPlacements = addDrop(thisBoard, thisShape, orientation, baseX, fromY, placements, numPlacements);
+
+        }
+
+        return numPlacements;
+
+    }
+
+
+    /* Add the placement for a shape dropped straight down from (baseX, fromY), if it falls cleanly */
+    private static int addDrop(ImmutableBoard thisBoard, Shape thisShape, int orientation, int baseX, int fromY,
+            int[] placements, int numPlacements) {
+
+        int restY = thisBoard.getDropY(thisShape, orientation, baseX);
+
+        /* The column tops only tell where it lands if it starts above them */
+        if (restY == ImmutableBoard.NO_ROOM || restY < fromY) return numPlacements;
+
+        placements[numPlacements] = packPlacement(orientation, baseX, restY);
+        return numPlacements + 1;
+
+    }
+
+
+    /* Pack a placement (orientation 0 -> 3 and base position) into an int */
+    public static int packPlacement(int orientation, int baseX, int baseY) {
+
+        return orientation << 20 | (baseX + 512) << 10 | (baseY + 512);
+
+    }
+
+    public static int placementOrientation(int placement) {
+
+        return placement >>> 20;
+
+    }
+
+    public static int placementX(int placement) {
+
+        return ((placement >>> 10) & 0x3FF) - 512;
+
+    }
+
+    public static int placementY(int placement) {
+
+        return (placement & 0x3FF) - 512;
+
+    }
+
+
+    /* Work out which orientations (0 -> 3) of each shape differ */
+    private static int[][] findDistinctOrientations() {
+
+        Shape[] shapes = Shape.values();
+        int[][] distinct = new int[shapes.length][];
+
+        for (int eachShape = 0; eachShape < shapes.length; eachShape++) {
+
+            int[] found = new int[4];
+            int numFound = 0;
+
+            for (int orientation = 0; orientation < 4; orientation++)
+                if (shapes[eachShape].getCanonicalOrientation(orientation) == orientation) found[numFound++] = orientation;
+
+            distinct[eachShape] = Arrays.copyOf(found, numFound);
+
+        }
+
+        return distinct;
+
+    }
+
+
+    /** STATISTICS **/
+
+    /* Get the number of pieces decided on */
+    public long getDecisions() {
+
+        return decisions_;
+
+    }
+
+
+    /* Get the mean time taken to decide on a piece, in nanoseconds */
+    public long getMeanDecisionTime() {
+
+        return (decisions_ == 0) ? 0 : totalDecisionTime_ / decisions_;
+
+    }
+
+
+    /* Get the longest time taken to decide on a piece, in nanoseconds */
+    public long getMaxDecisionTime() {
+
+        return maxDecisionTime_;
+
+    }
+
+
+    /* Get the number of boards scored */
+    public long getBoardsEvaluated() {
+
+        return boardsEvaluated_;
+
+    }
+
+
+    /* Get the number of decisions the time budget cut short of the lookahead */
+    public long getCutShort() {
+
+        return cutShort_;
+
+    }
+
+}
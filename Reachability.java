@@ -0,0 +1,412 @@
+package game;
+
+import java.util.Arrays;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class works out every placement a piece can reach on a board, and
+ * the fewest inputs that get it to each one.
+ *
+ * It is a breadth-first search over the states a piece can be in (base x,
+ * base y and orientation), moving between them with the inputs a player
+ * has: move left and right, turn either way, and soft drop a row.  Every
+ * state from which the piece can fall no further is a placement, reached
+ * with one more input (a hard drop) from the highest state above it in the
+ * same column that the search got to first.  As the search follows soft
+ * drops too, it finds the tucks and spins under overhangs that dropping
+ * straight down misses.
+ *
+ * The moves follow Tetrad's own rules exactly, including how turning
+ * shifts the base and the straight line's moves off and back on to the
+ * edges, but test each state against an ImmutableBoard's packed rows, so
+ * no Tetrad or Board is touched.
+ *
+ * A Reachability reuses its buffers from one search to the next, so it
+ * is not safe to share between threads: each thread needs its own.
+ *
+ */
+
+public class Reachability {
+
+    /* Inputs tried from each state, in order */
+    private static final int[] INPUTS = { GameInput.MOVE_LEFT, GameInput.MOVE_RIGHT, GameInput.TURN_RIGHT,
+            GameInput.TURN_LEFT, GameInput.SOFT_DROP };
+
+    /* Room kept round the board for base positions just off its edges */
+    private static final int MARGIN = 2;
+
+    /* Size of the state space searched: four orientations of every base position, margins included */
+    private int spanX_, spanY_;
+
+    /* Per state: the search that last reached it, its distance, the state before it and the input between */
+    private int[] reached_ = new int[0];
+    private int[] distance_ = new int[0];
+    private int[] previous_ = new int[0];
+    private byte[] input_ = new byte[0];
+    private int[] queue_ = new int[0];
+    private int search_;
+
+    /* Per footprint (first orientation with the same cells, left column and top row): the placement found there */
+    private int[] footprintSearch_ = new int[0];
+    private int[] footprintFound_ = new int[0];
+
+    /* Placements found by the last search: each one's placement, inputs, and the state it is hard dropped from */
+    private int numFound_;
+    private int[] found_ = new int[PlacementBot.MAX_PLACEMENTS];
+    private int[] foundInputs_ = new int[PlacementBot.MAX_PLACEMENTS];
+    private int[] foundFrom_ = new int[PlacementBot.MAX_PLACEMENTS];
+
+
+    /** METHODS **/
+
+    /*
+     * Find every placement a shape can reach from its base at (fromX, fromY) in the given
+     * orientation (0 -> 4, as Tetrad has them).  Fills placements (packed by
+     * PlacementBot.packPlacement(), orientation 0 -> 3) with as many as it holds and returns the
+     * number filled; placements covering the same cells are only listed once.
+     */
+    public int search(ImmutableBoard thisBoard, Shape thisShape, int fromX, int fromY, int fromOrientation,
+            int[] placements) {
+
+        ensureCapacity(thisBoard.getWidth(), thisBoard.getHeight());
+
+        search_++;
+        numFound_ = 0;
+
+        int startOrientation = fromOrientation % 4;
+        if (thisBoard.collides(thisShape, startOrientation, fromX, fromY)) return 0;
+
+        int start = stateIndex(startOrientation, fromX, fromY);
+        reached_[start] = search_;
+        distance_[start] = 0;
+        previous_[start] = -1;
+
+        queue_[0] = start;
+        spread(thisBoard, thisShape, 1);
+
+        findRestingStates(thisBoard, thisShape);
+
+        /* Only as many as placements holds: getInputs() indexes the same list */
+        int numCopied = Math.min(numFound_, placements.length);
+        System.arraycopy(found_, 0, placements, 0, numCopied);
+        return numCopied;
+
+    }
+
+
+    /*
+     * Find every placement a shape can reach on a stack with clear rows between it and the spawn
+     * row, where a piece can get to every column in every orientation over the top.  Rather than
+     * from where the piece comes on, this searches from every state just clear of the stack, so
+     * it is much quicker than search(); but the inputs counted are from there, so getInputs()
+     * means nothing after it.  Fills placements as search() does.
+     */
+    public int searchFromClearRows(ImmutableBoard thisBoard, Shape thisShape, int[] placements) {
+
+        ensureCapacity(thisBoard.getWidth(), thisBoard.getHeight());
+
+        search_++;
+        numFound_ = 0;
+
+        int topRow = thisBoard.getHeight() - thisBoard.getMaxHeight();
+        int tail = 0;
+
+        for (int orientation = 0; orientation < 4; orientation++) {
+
+            int baseY = topRow - 1 - thisShape.getMaxY(orientation);
+            int lastX = thisBoard.getWidth() - 1 - thisShape.getMaxX(orientation);
+
+            for (int baseX = -thisShape.getMinX(orientation); baseX <= lastX; baseX++) {
+
+                int state = stateIndex(orientation, baseX, baseY);
+                reached_[state] = search_;
+                distance_[state] = 0;
+                previous_[state] = -1;
+                queue_[tail++] = state;
+
+            }
+
+        }
+
+        spread(thisBoard, thisShape, tail);
+
+        findRestingStates(thisBoard, thisShape);
+
+        int numCopied = Math.min(numFound_, placements.length);
+        System.arraycopy(found_, 0, placements, 0, numCopied);
+        return numCopied;
+
+    }
+
+
+    /* Search breadth first from the first tail states queued, so every state is first reached by the fewest inputs */
+    private void spread(ImmutableBoard thisBoard, Shape thisShape, int tail) {
+
+        int head = 0;
+
+        while (head < tail) {
+
+            int state = queue_[head++];
+            int orientation = stateOrientation(state);
+            int baseX = stateX(state);
+            int baseY = stateY(state);
+
+            for (int eachInput = 0; eachInput < INPUTS.length; eachInput++) {
+
+                int moved = applyInput(thisBoard, thisShape, orientation, baseX, baseY, INPUTS[eachInput]);
+
+                int next = stateIndex(PlacementBot.placementOrientation(moved), PlacementBot.placementX(moved),
+                        PlacementBot.placementY(moved));
+                if (reached_[next] == search_) continue;
+
+                reached_[next] = search_;
+                distance_[next] = distance_[state] + 1;
+                previous_[next] = state;
+                input_[next] = (byte) eachInput;
+                queue_[tail++] = next;
+
+            }
+
+        }
+
+    }
+
+
+    /*
+     * Go down every column of states reached: each state the piece can fall no further from is a
+     * placement, hard dropped from whichever state above it (with nothing in between) was
+     * reached with the fewest inputs.
+     */
+    private void findRestingStates(ImmutableBoard thisBoard, Shape thisShape) {
+
+        for (int orientation = 0; orientation < 4; orientation++) {
+
+            for (int baseX = -MARGIN; baseX < spanX_ - MARGIN; baseX++) {
+
+                int bestAbove = -1;
+
+                for (int baseY = -MARGIN; baseY < spanY_ - MARGIN; baseY++) {
+
+                    int state = stateIndex(orientation, baseX, baseY);
+
+                    if (reached_[state] != search_) {
+                        bestAbove = -1;
+                        continue;
+                    }
+
+                    if (bestAbove < 0 || distance_[state] < distance_[bestAbove]) bestAbove = state;
+
+                    if (thisBoard.collides(thisShape, orientation, baseX, baseY + 1))
+                        addPlacement(thisShape, orientation, baseX, baseY, bestAbove);
+
+                }
+
+            }
+
+        }
+
+    }
+
+
+    /* Add a placement, or keep the cheaper way of reaching it if its cells are already listed */
+    private void addPlacement(Shape thisShape, int orientation, int baseX, int baseY, int dropFrom) {
+
+        int footprint = stateIndex(thisShape.getCanonicalOrientation(orientation), baseX + thisShape.getMinX(orientation),
+                baseY + thisShape.getMinY(orientation));
+        int inputs = distance_[dropFrom] + 1;
+
+        if (footprintSearch_[footprint] == search_) {
+
+            int existing = footprintFound_[footprint];
+            if (foundInputs_[existing] <= inputs) return;
+
+            found_[existing] = PlacementBot.packPlacement(orientation, baseX, baseY);
+            foundInputs_[existing] = inputs;
+            foundFrom_[existing] = dropFrom;
+            return;
+
+        }
+
+        if (numFound_ == found_.length) growFound();
+
+        footprintSearch_[footprint] = search_;
+        footprintFound_[footprint] = numFound_;
+
+        found_[numFound_] = PlacementBot.packPlacement(orientation, baseX, baseY);
+        foundInputs_[numFound_] = inputs;
+        foundFrom_[numFound_] = dropFrom;
+        numFound_++;
+
+    }
+
+
+    /* Get the fewest inputs (the hard drop included) that reach a placement found by the last search */
+    public int getInputCount(int index) {
+
+        return foundInputs_[index];
+
+    }
+
+
+    /*
+     * Write the inputs (GameInput flags, one per input, ending with the hard drop) that reach a
+     * placement found by the last search.  inputs must hold getInputCount(index); returns the count.
+     */
+    public int getInputs(int index, int[] inputs) {
+
+        int numInputs = foundInputs_[index];
+        inputs[numInputs - 1] = GameInput.HARD_DROP;
+
+        int slot = numInputs - 2;
+        for (int state = foundFrom_[index]; previous_[state] >= 0; state = previous_[state])
+            inputs[slot--] = INPUTS[input_[state]];
+
+        return numInputs;
+
+    }
+
+
+    /*
+     * Work out where one input moves a piece at (baseX, baseY) in the given orientation (0 -> 3),
+     * just as the Tetrad would move.  Returns the packed placement (PlacementBot.packPlacement())
+     * it ends up in, which is where it started if it couldn't move.
+     */
+    public static int applyInput(ImmutableBoard thisBoard, Shape thisShape, int orientation, int baseX, int baseY,
+            int input) {
+
+        switch (input) {
+        case GameInput.MOVE_LEFT:
+            if (!thisBoard.collides(thisShape, orientation, baseX - 1, baseY)) baseX--;
+            break;
+        case GameInput.MOVE_RIGHT:
+            if (!thisBoard.collides(thisShape, orientation, baseX + 1, baseY)) baseX++;
+            break;
+        case GameInput.SOFT_DROP:
+            if (!thisBoard.collides(thisShape, orientation, baseX, baseY + 1)) baseY++;
+            break;
+        case GameInput.TURN_RIGHT:
+            return turn(thisBoard, thisShape, orientation, baseX, baseY, true);
+        case GameInput.TURN_LEFT:
+            return turn(thisBoard, thisShape, orientation, baseX, baseY, false);
+        }
+
+        return PlacementBot.packPlacement(orientation, baseX, baseY);
+
+    }
+
+
+    /*
+     * Turn a piece as Tetrad.turn() does: orientations run 1 -> 4 (0 counts as 4 going
+     * counter-clockwise), the base shifts by the offsets for block 0, and a straight line next
+     * to an edge is moved off it to turn and back again after.
+     */
+    private static int turn(ImmutableBoard thisBoard, Shape thisShape, int orientation, int baseX, int baseY,
+            boolean clockWise) {
+
+        int current = (!clockWise && orientation == 0) ? 4 : orientation;
+        int turned = clockWise ? current + 1 : current - 1;
+        if (turned < 1) turned = 4;
+
+        boolean straightLine = thisShape == Shape.STRAIGHTLINE;
+        boolean upright = straightLine && current % 2 == 0;
+        boolean onRightEdge = false, onLeftEdge = false, shiftRight = false;
+        int width = thisBoard.getWidth();
+
+        /* Tetrad's straight line exception handlers */
+        if (upright) {
+            if (baseX == width - 2) {
+                if (!thisBoard.collides(thisShape, orientation, baseX - 1, baseY)) baseX--;
+                onRightEdge = true;
+            }
+            if (baseX == 1) {
+                if (!thisBoard.collides(thisShape, orientation, baseX + 1, baseY)) baseX++;
+                onLeftEdge = true;
+            }
+        } else if (straightLine) {
+            if (baseX + thisShape.getMaxX(current) == width - 1) shiftRight = true;
+        }
+
+        int newX = clockWise ? baseX + thisShape.getRelativeX(turned, 0) : baseX - thisShape.getRelativeX(current, 0);
+        int newY = clockWise ? baseY + thisShape.getRelativeY(turned, 0) : baseY - thisShape.getRelativeY(current, 0);
+        if (shiftRight) newX++;
+
+        if (thisBoard.collides(thisShape, turned, newX, newY)) {
+
+            /* Blocked: put an upright line back where it was moved from */
+            if (onRightEdge && !thisBoard.collides(thisShape, orientation, baseX + 1, baseY)) baseX++;
+            if (onLeftEdge && !thisBoard.collides(thisShape, orientation, baseX - 1, baseY)) baseX--;
+
+            return PlacementBot.packPlacement(orientation, baseX, baseY);
+
+        }
+
+        /* Turned: an upright line moves back towards the edge it came off */
+        if (onRightEdge && !thisBoard.collides(thisShape, turned, newX + 1, newY)) newX++;
+        if (onLeftEdge) {
+            if (!thisBoard.collides(thisShape, turned, newX - 1, newY)) newX--;
+            if (!thisBoard.collides(thisShape, turned, newX - 1, newY)) newX--;
+        }
+
+        return PlacementBot.packPlacement(turned % 4, newX, newY);
+
+    }
+
+
+    /* Index of a state: orientation 0 -> 3 and a base position within the margins */
+    private int stateIndex(int orientation, int baseX, int baseY) {
+
+        return (orientation * spanY_ + baseY + MARGIN) * spanX_ + baseX + MARGIN;
+
+    }
+
+    private int stateOrientation(int state) {
+
+        return state / (spanX_ * spanY_);
+
+    }
+
+    private int stateX(int state) {
+
+        return state % spanX_ - MARGIN;
+
+    }
+
+    private int stateY(int state) {
+
+        return state / spanX_ % spanY_ - MARGIN;
+
+    }
+
+
+    /* Size the buffers for a board, growing them if it is bigger than any searched before */
+    private void ensureCapacity(int width, int height) {
+
+        spanX_ = width + 2 * MARGIN;
+        spanY_ = height + 2 * MARGIN;
+
+        int numStates = 4 * spanX_ * spanY_;
+        if (reached_.length >= numStates) return;
+
+        reached_ = new int[numStates];
+        distance_ = new int[numStates];
+        previous_ = new int[numStates];
+        input_ = new byte[numStates];
+        queue_ = new int[numStates];
+        footprintSearch_ = new int[numStates];
+        footprintFound_ = new int[numStates];
+
+    }
+
+
+    /* Make room for more placements (only on boards wider than 64) */
+    private void growFound() {
+
+        found_ = Arrays.copyOf(found_, found_.length * 2);
+        foundInputs_ = Arrays.copyOf(foundInputs_, found_.length);
+        foundFrom_ = Arrays.copyOf(foundFrom_, found_.length);
+
+    }
+
+}
@@ -0,0 +1,277 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class records a Game to a replay file as it is played.
+ *
+ * A game is decided entirely by its piece generator (type and seed), its
+ * board size, its entry delay, how it hard drops and the inputs passed to
+ * each step, so that is all a replay holds:
+ *
+ *      header:  "TTRP", version, generator type, seed (8 bytes),
+ *               width, height, entry delay, soft speed drop (1 or 0)
+ *      events:  (steps since the last event, inputs) for every step
+ *               that was anything other than plain gravity
+ *      footer:  0 (no step is ever 0 steps on), total steps, score,
+ *               lines, level, and whether the game was over
+ *
+ * Every number other than the seed is a varint (7 bits a byte, low bits
+ * first), so most events take two bytes.
+ *
+ * The game thread only ever appends to an in-memory buffer.  Whenever the
+ * buffer fills (and when the game ends) it is handed to a single shared
+ * writer thread, which appends it to the file through a FileChannel, so
+ * the game never waits on the disk (unless the writer falls so far behind
+ * that its queue fills, when the game waits for room rather than drop a
+ * buffer).  The writer is not a daemon, so a JVM that exits as the game
+ * ends still writes the end of the replay first; it stops once it has been
+ * idle for a second.  If the file can't be written, the replay is given up
+ * on (the game carries on), and hasFailed() and getFailure() say why.
+ *
+ */
+
+public class ReplayRecorder {
+
+    /* File format */
+    public static final byte[] MAGIC = { 'T', 'T', 'R', 'P' };
+    public static final int VERSION = 2;
+    public static final String EXTENSION = ".ttr";
+
+    /* Bytes buffered before they are handed to the writer */
+    private static final int BUFFER_SIZE = 4096;
+
+    /* Room kept at the end of the buffer for one more event, or the footer */
+    private static final int EVENT_ROOM = 64;
+
+    /* Buffers waiting for the writer before the game has to wait for it */
+    private static final int MAX_QUEUED = 256;
+
+    /* The one thread that writes every replay file: started when there is work, gone when there isn't */
+    private static final ThreadPoolExecutor WRITER = createWriter();
+
+    /* The file being written (only touched on the writer thread) */
+    private Path file_;
+    private FileChannel channel_;
+
+    /* Why the file couldn't be written (null while all is well) */
+    private volatile IOException failure_;
+
+    /* Bytes not yet handed to the writer */
+    private ByteBuffer buffer_ = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /* The last step recorded */
+    private long lastStep_;
+
+
+    /** CONSTRUCTOR: write the header for a game that has not yet taken a step **/
+    public ReplayRecorder(Path replayFile, Game thisGame) {
+
+        file_ = replayFile;
+
+        PieceGenerator generator = thisGame.getPieceGenerator();
+
+        buffer_.put(MAGIC);
+        buffer_.put((byte) VERSION);
+        buffer_.put((byte) generator.getType());
+        buffer_.putLong(generator.getSeed());
+        putVarint(thisGame.getBoard().getWidth());
+        putVarint(thisGame.getBoard().getHeight());
+        putVarint(thisGame.getEntryDelay());
+        buffer_.put((byte) (thisGame.isSoftSpeedDrop() ? 1 : 0));
+
+        lastStep_ = thisGame.getStepCount();
+
+    }
+
+
+    /** METHODS **/
+
+    /* Record the inputs for a step (numbered from 1): plain gravity steps are left out */
+    public void recordStep(long stepNumber, int inputs) {
+
+        if (inputs == GameInput.GRAVITY) return;
+
+        putVarint(stepNumber - lastStep_);
+        putVarint(inputs);
+        lastStep_ = stepNumber;
+
+        if (buffer_.remaining() < EVENT_ROOM) handOver(false);
+
+    }
+
+
+    /* Finish the replay with the game's results, and close the file once written */
+    public void finish(Game thisGame) {
+
+        ScoringMetrics score = thisGame.getGameScore();
+
+        putVarint(0);
+        putVarint(thisGame.getStepCount());
+        putVarint(score.getScore());
+        putVarint(score.getCompletedLines());
+        putVarint(score.getLevel());
+        buffer_.put((byte) (thisGame.isGameOver() ? 1 : 0));
+
+        handOver(true);
+
+    }
+
+
+    /* Get the file being written */
+    public Path getFile() {
+
+        return file_;
+
+    }
+
+
+    /* Check whether writing the replay failed (it is given up on, but the game carries on) */
+    public boolean hasFailed() {
+
+        return failure_ != null;
+
+    }
+
+
+    /* Get why writing the replay failed, or null if it hasn't */
+    public IOException getFailure() {
+
+        return failure_;
+
+    }
+
+
+    /* Wait (for up to the given time) for every replay handed over so far to be written */
+    public static boolean awaitWrites(long timeoutMillis) {
+
+        try {
+
+            /* The writer runs tasks in order, so once this has run, so has everything before it */
+            WRITER.submit(new Runnable() {
+                public void run() {
+                    // Nothing to do
+                }
+            }).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+
+        } catch (Exception e) {
+            return false;
+        }
+
+    }
+
+
+    /* Create the writer: one non-daemon thread, a bounded queue, and a full queue makes the caller wait */
+    private static ThreadPoolExecutor createWriter() {
+
+        ThreadFactory writerThreads = new ThreadFactory() {
+            public Thread newThread(Runnable thisTask) {
+                return new Thread(thisTask, "ReplayWriter");
+            }
+        };
+
+        RejectedExecutionHandler waitForRoom = new RejectedExecutionHandler() {
+            public void rejectedExecution(Runnable thisTask, ThreadPoolExecutor writer) {
+                boolean interrupted = false;
+                while (true) {
+                    try {
+                        writer.getQueue().put(thisTask);
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+        };
+
+        ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_QUEUED), writerThreads, waitForRoom);
+        writer.allowCoreThreadTimeOut(true);
+
+        return writer;
+
+    }
+
+
+    /* Hand the buffered bytes to the writer thread, and start a new buffer */
+    private void handOver(boolean close) {
+
+        final ByteBuffer toWrite = buffer_;
+        toWrite.flip();
+
+        buffer_ = close ? null : ByteBuffer.allocate(BUFFER_SIZE);
+
+        WRITER.execute(new Runnable() {
+            public void run() {
+                write(toWrite, close);
+            }
+        });
+
+    }
+
+
+    /* WRITER THREAD: append bytes to the file (opening it the first time), closing it at the end */
+    private void write(ByteBuffer toWrite, boolean close) {
+
+        if (failure_ != null) return;
+
+        try {
+
+            if (channel_ == null)
+                channel_ = FileChannel.open(file_, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+
+            while (toWrite.hasRemaining()) channel_.write(toWrite);
+
+            if (close) channel_.close();
+
+        } catch (IOException e) {
+            /* Give up on this replay, but never on the game */
+            failure_ = e;
+            closeQuietly();
+        }
+
+    }
+
+
+    /* WRITER THREAD: close the file after a failure, keeping the first failure as the reason */
+    private void closeQuietly() {
+
+        if (channel_ == null) return;
+
+        try {
+            channel_.close();
+        } catch (IOException e) {
+            // Already failed
+        }
+
+    }
+
+
+    /* Append a varint */
+    private void putVarint(long value) {
+
+        while ((value & ~0x7FL) != 0) {
+            buffer_.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        buffer_.put((byte) value);
+
+    }
+
+}
@@ -0,0 +1,310 @@
+package game;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class plays back replay files written by ReplayRecorder.
+ *
+ * Each replay is played again from its seed in a headless Game, step by
+ * step, as fast as the game logic will go (no window, no tick, no
+ * flashes).  The score, lines and level it ends on are then checked
+ * against the ones recorded, which catches both tampered replays and
+ * changes to the game logic that alter how games play out.
+ *
+ * A whole directory of replays can be checked at once, split across every
+ * core with a fork-join pool.
+ *
+ *      java game.ReplayRunner <replay file or directory>
+ *
+ */
+
+public class ReplayRunner {
+
+    /*
+     * The outcome of checking one replay.
+     */
+    public static class Result {
+
+        /* The replay checked */
+        private Path file_;
+
+        /* Whether the game played back to the same result, and if not, why not */
+        private boolean verified_;
+        private String message_;
+
+        /* Steps played back */
+        private long steps_;
+
+
+        /** CONSTRUCTOR **/
+        Result(Path thisFile, boolean verified, String message, long steps) {
+
+            file_ = thisFile;
+            verified_ = verified;
+            message_ = message;
+            steps_ = steps;
+
+        }
+
+        public Path getFile() {
+
+            return file_;
+
+        }
+
+        public boolean isVerified() {
+
+            return verified_;
+
+        }
+
+        public String getMessage() {
+
+            return message_;
+
+        }
+
+        public long getSteps() {
+
+            return steps_;
+
+        }
+
+        public String toString() {
+
+            return file_ + ": " + (verified_ ? "OK" : "FAILED") + " (" + message_ + ")";
+
+        }
+
+    }
+
+
+    /* Games below this many are checked on one thread rather than split further */
+    private static final int SPLIT_THRESHOLD = 8;
+
+
+    /** REDUNDANT CONSTRUCTOR: static methods only **/
+    private ReplayRunner() {
+        // Redundant
+    }
+
+
+    /** METHODS **/
+
+    /* Play back a single replay and check its result */
+    public static Result verify(Path replayFile) {
+
+        try {
+
+            return verify(replayFile, ByteBuffer.wrap(Files.readAllBytes(replayFile)));
+
+        } catch (IOException e) {
+            return new Result(replayFile, false, "could not read: " + e.getMessage(), 0);
+        }
+
+    }
+
+
+    /* Play back a replay already read into memory */
+    public static Result verify(Path replayFile, ByteBuffer replay) {
+
+        try {
+
+            /* Header */
+            for (int eachByte = 0; eachByte < ReplayRecorder.MAGIC.length; eachByte++)
+                if (replay.get() != ReplayRecorder.MAGIC[eachByte])
+                    return new Result(replayFile, false, "not a replay", 0);
+
+            int version = replay.get();
+            /* Version 1 had no soft speed drop flag: those games always hard dropped */
+            if (version != ReplayRecorder.VERSION && version != 1)
+                return new Result(replayFile, false, "unknown version " + version, 0);
+
+            int generatorType = replay.get();
+            long seed = replay.getLong();
+            int width = (int) getVarint(replay);
+            int height = (int) getVarint(replay);
+            int entryDelay = (int) getVarint(replay);
+            boolean softSpeedDrop = version > 1 && replay.get() != 0;
+
+            /* The same game, ending each entry delay exactly where the recording did */
+            Game thisGame = new Game(width, height, PieceGenerator.create(generatorType, seed));
+            thisGame.setEntryDelay(entryDelay);
+            thisGame.setSoftSpeedDrop(softSpeedDrop);
+            thisGame.setEntryOnInput(true);
+
+            /* Events: plain gravity for every step left out, then the recorded inputs */
+            long stepDelta;
+            while ((stepDelta = getVarint(replay)) != 0) {
+
+                int inputs = (int) getVarint(replay);
+
+                for (long eachStep = 1; eachStep < stepDelta; eachStep++) thisGame.step(GameInput.GRAVITY);
+                thisGame.step(inputs);
+
+            }
+
+            /* Footer */
+            long totalSteps = getVarint(replay);
+            long score = getVarint(replay);
+            long lines = getVarint(replay);
+            long level = getVarint(replay);
+            boolean gameOver = replay.get() != 0;
+
+            while (thisGame.getStepCount() < totalSteps && thisGame.step(GameInput.GRAVITY)) {
+                // Plain gravity to the end
+            }
+
+            return compare(replayFile, thisGame, totalSteps, score, lines, level, gameOver);
+
+        } catch (BufferUnderflowException e) {
+            return new Result(replayFile, false, "replay is cut short", 0);
+        }
+
+    }
+
+
+    /* Check a played back game against the recorded result */
+    private static Result compare(Path replayFile, Game thisGame, long steps, long score, long lines, long level,
+            boolean gameOver) {
+
+        ScoringMetrics played = thisGame.getGameScore();
+
+        String message = null;
+        if (thisGame.getStepCount() != steps) message = "steps " + thisGame.getStepCount() + ", recorded " + steps;
+        else if (played.getScore() != score) message = "score " + played.getScore() + ", recorded " + score;
+        else if (played.getCompletedLines() != lines) message = "lines " + played.getCompletedLines() + ", recorded " + lines;
+        else if (played.getLevel() != level) message = "level " + played.getLevel() + ", recorded " + level;
+        else if (thisGame.isGameOver() != gameOver) message = gameOver ? "game not over" : "game over early";
+
+        if (message != null) return new Result(replayFile, false, message, thisGame.getStepCount());
+
+        return new Result(replayFile, true, "score " + score + ", lines " + lines + ", level " + level,
+                thisGame.getStepCount());
+
+    }
+
+
+    /* Check every replay in a directory, in parallel across the given number of threads */
+    public static Result[] verifyDirectory(Path directory, int parallelism) throws IOException {
+
+        ArrayList<Path> replays = new ArrayList<Path>();
+        try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory, "*" + ReplayRecorder.EXTENSION)) {
+            for (Path eachFile : listing) replays.add(eachFile);
+        }
+
+        Path[] files = replays.toArray(new Path[replays.size()]);
+        Result[] results = new Result[files.length];
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new VerifyRange(files, results, 0, files.length));
+        } finally {
+            pool.shutdown();
+        }
+
+        return results;
+
+    }
+
+
+    /*
+     * Check a range of replays: split in half until small enough to check on this thread.
+     */
+    private static class VerifyRange extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private Path[] files_;
+        private Result[] results_;
+        private int from_, to_;
+
+        VerifyRange(Path[] files, Result[] results, int from, int to) {
+
+            files_ = files;
+            results_ = results;
+            from_ = from;
+            to_ = to;
+
+        }
+
+        protected void compute() {
+
+            if (to_ - from_ <= SPLIT_THRESHOLD) {
+                for (int eachFile = from_; eachFile < to_; eachFile++) results_[eachFile] = verify(files_[eachFile]);
+                return;
+            }
+
+            int middle = (from_ + to_) >>> 1;
+            invokeAll(new VerifyRange(files_, results_, from_, middle), new VerifyRange(files_, results_, middle, to_));
+
+        }
+
+    }
+
+
+    /* Read a varint */
+    private static long getVarint(ByteBuffer replay) {
+
+        long value = 0;
+        int shift = 0;
+        byte thisByte;
+
+        do {
+            thisByte = replay.get();
+            value |= (long) (thisByte & 0x7F) << shift;
+            shift += 7;
+        } while ((thisByte & 0x80) != 0);
+
+        return value;
+
+    }
+
+
+    /* Check a replay, or a directory of replays, and report */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 1) {
+            System.out.println("Usage: java game.ReplayRunner <replay file or directory>");
+            return;
+        }
+
+        Path target = Paths.get(args[0]);
+
+        if (!Files.isDirectory(target)) {
+            System.out.println(verify(target));
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        Result[] results = verifyDirectory(target, Runtime.getRuntime().availableProcessors());
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        int failed = 0;
+        long steps = 0;
+        for (int eachResult = 0; eachResult < results.length; eachResult++) {
+            steps += results[eachResult].getSteps();
+            if (!results[eachResult].isVerified()) {
+                failed++;
+                System.out.println(results[eachResult]);
+            }
+        }
+
+        System.out.format("%d replays, %d failed, in %.2fs: %.0f games/s, %.0f steps/s%n",
+                results.length, failed, seconds, results.length / seconds, steps / seconds);
+
+    }
+
+}
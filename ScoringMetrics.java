@@ -1,5 +1,7 @@
 package game;
 
+import java.nio.ByteBuffer;
+
 /***
  * 
  * @author Andrew Connell
@@ -12,6 +14,10 @@ package game;
 
 public class ScoringMetrics {
 
+    /* Points for each line, and for each line completed at once past the first */
+    public static final int LINE_POINTS = 10;
+    public static final int MULTIPLE_LINE_POINTS = 25;
+
     /* Player's current score */
     private int currentScore_;
     
@@ -70,7 +76,7 @@ public class ScoringMetrics {
     /* Complete a single line */
     public void singleLineCompleted() {
         
-        amendScore(10);
+        amendScore(LINE_POINTS);
         totalLines_++;
         
         /* For multiples of 15 lines, increase level and speed */
@@ -97,7 +103,15 @@ public class ScoringMetrics {
         }
         
         /* Add multiples of 25 for each additional line */
-        amendScore(25 * (numLines - 1));
+        amendScore(MULTIPLE_LINE_POINTS * (numLines - 1));
+        
+    }
+    
+    
+    /* Get the points for completing numLines lines at once */
+    public static int pointsFor(int numLines) {
+
+        return (numLines <= 0) ? 0 : LINE_POINTS * numLines + MULTIPLE_LINE_POINTS * (numLines - 1);
         
     }
     
@@ -141,4 +155,26 @@ public class ScoringMetrics {
         
     }
     
+    
+    /* Write the score, lines, level and speed change to a snapshot */
+    void saveState(ByteBuffer snapshot) {
+        
+        snapshot.putInt(currentScore_);
+        snapshot.putInt(totalLines_);
+        snapshot.putInt(currentLevel_);
+        snapshot.putInt(speedAmend_);
+        
+    }
+    
+    
+    /* Take on the values written by saveState() */
+    void restoreState(ByteBuffer snapshot) {
+        
+        currentScore_ = snapshot.getInt();
+        totalLines_ = snapshot.getInt();
+        currentLevel_ = snapshot.getInt();
+        speedAmend_ = snapshot.getInt();
+        
+    }
+    
 }
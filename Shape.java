@@ -97,7 +97,42 @@ public enum Shape {
     
 
     
-    private Point[][] points_;
+    /* Number of orientations held for each shape (0, 90, 180, 270 and back to 0) */
+    public static final int ORIENTATIONS = 5;
+
+    /* Number of blocks in each shape */
+    public static final int BLOCKS = 4;
+
+    /* Every shape, by ordinal (values() copies the array on every call) */
+    private static final Shape[] VALUES = values();
+
+    /*
+     * Relative positions, as read in, packed [orientation * BLOCKS + block].  For block 0
+     * this is the shift applied to the base position when turning into the orientation;
+     * the other blocks are relative to the base position.
+     */
+    private final byte[] relativeX_ = new byte[ORIENTATIONS * BLOCKS];
+    private final byte[] relativeY_ = new byte[ORIENTATIONS * BLOCKS];
+
+    /* Offsets of each block from the base position once placed (block 0 sits on the base) */
+    private final byte[] blockX_ = new byte[ORIENTATIONS * BLOCKS];
+    private final byte[] blockY_ = new byte[ORIENTATIONS * BLOCKS];
+
+    /* Bounding box of the placed blocks, relative to the base position, for each orientation */
+    private final byte[] minX_ = new byte[ORIENTATIONS];
+    private final byte[] maxX_ = new byte[ORIENTATIONS];
+    private final byte[] minY_ = new byte[ORIENTATIONS];
+    private final byte[] maxY_ = new byte[ORIENTATIONS];
+
+    /*
+     * Row masks for bitboard collision, packed [orientation * BLOCKS + row].  Row 0 is the
+     * top row of the bounding box and bit 0 is its left-hand column.
+     */
+    private final long[] rowMasks_ = new long[ORIENTATIONS * BLOCKS];
+
+    /* For each orientation, the first orientation covering the same cells (e.g. 2 for an S turned to 0) */
+    private final byte[] canonical_ = new byte[ORIENTATIONS];
+
 
     
     
@@ -113,8 +148,6 @@ public enum Shape {
             int cY2, int cX3, int cY3,
             int dX, int dY, int dX1, int dY1,
             int dX2, int dY2, int dX3, int dY3) {
-        
-        points_ = new Point[5][4];
 
         
         int[] firstX = {x, x1, x2, x3};
@@ -142,14 +175,66 @@ public enum Shape {
         yPoints[3] = fourthY;
         yPoints[4] = fifthY;
         
-        for (int eachTurn = 0; eachTurn < 5; eachTurn++) {
-            for (int eachPoint = 0; eachPoint < 4; eachPoint++) {
+        for (int eachTurn = 0; eachTurn < ORIENTATIONS; eachTurn++) {
+            for (int eachPoint = 0; eachPoint < BLOCKS; eachPoint++) {
             
                 /* Clockwise Points */
-                points_[eachTurn][eachPoint] = new Point(xPoints[eachTurn][eachPoint], 
-                        yPoints[eachTurn][eachPoint]);
+                relativeX_[eachTurn * BLOCKS + eachPoint] = (byte) xPoints[eachTurn][eachPoint];
+                relativeY_[eachTurn * BLOCKS + eachPoint] = (byte) yPoints[eachTurn][eachPoint];
+
+                /* Block 0 always sits on the base position */
+                if (eachPoint > 0) {
+                    blockX_[eachTurn * BLOCKS + eachPoint] = (byte) xPoints[eachTurn][eachPoint];
+                    blockY_[eachTurn * BLOCKS + eachPoint] = (byte) yPoints[eachTurn][eachPoint];
+                }
                 
             }    
+
+            buildBoundsAndMasks(eachTurn);
+        }
+
+        for (int eachTurn = 0; eachTurn < ORIENTATIONS; eachTurn++) {
+            int first = 0;
+            while (!sameCells(first, eachTurn)) first++;
+            canonical_[eachTurn] = (byte) first;
+        }
+        
+    }
+
+
+    /* Check whether two orientations cover the same cells (with their top-left corners together) */
+    private boolean sameCells(int orientation, int other) {
+
+        if (getRowCount(orientation) != getRowCount(other)) return false;
+
+        for (int row = 0; row < getRowCount(orientation); row++)
+            if (rowMasks_[orientation * BLOCKS + row] != rowMasks_[other * BLOCKS + row]) return false;
+
+        return true;
+        
+    }
+    
+    
+    /* Work out the bounding box and row masks for an orientation from its block offsets */
+    private void buildBoundsAndMasks(int orientation) {
+
+        int minX = 0, maxX = 0, minY = 0, maxY = 0;
+
+        for (int eachBlock = 0; eachBlock < BLOCKS; eachBlock++) {
+            minX = Math.min(minX, blockX_[orientation * BLOCKS + eachBlock]);
+            maxX = Math.max(maxX, blockX_[orientation * BLOCKS + eachBlock]);
+            minY = Math.min(minY, blockY_[orientation * BLOCKS + eachBlock]);
+            maxY = Math.max(maxY, blockY_[orientation * BLOCKS + eachBlock]);
+        }
+
+        minX_[orientation] = (byte) minX;
+        maxX_[orientation] = (byte) maxX;
+        minY_[orientation] = (byte) minY;
+        maxY_[orientation] = (byte) maxY;
+
+        for (int eachBlock = 0; eachBlock < BLOCKS; eachBlock++) {
+            int row = blockY_[orientation * BLOCKS + eachBlock] - minY;
+            rowMasks_[orientation * BLOCKS + row] |= 1L << (blockX_[orientation * BLOCKS + eachBlock] - minX);
         }
         
     }
@@ -157,10 +242,123 @@ public enum Shape {
     
     /** Methods for Shape follow... **/
 
-    /* Access the points for this shape */
+    /* Get the shape with the given ordinal, without allocating */
+    public static Shape fromOrdinal(int ordinal) {
+        
+        return VALUES[ordinal];
+        
+    }
+
+
+    /* Access the points for this shape (a fresh copy: the shape's own tables can't be changed) */
     public Point[][] accessRelativePoints() {
         
-        return points_;
+        Point[][] points = new Point[ORIENTATIONS][BLOCKS];
+
+        for (int eachTurn = 0; eachTurn < ORIENTATIONS; eachTurn++)
+            for (int eachPoint = 0; eachPoint < BLOCKS; eachPoint++)
+                points[eachTurn][eachPoint] = new Point(getRelativeX(eachTurn, eachPoint), getRelativeY(eachTurn, eachPoint));
+
+        return points;
+        
+    }
+
+
+    /* Relative x of a block as read in (for block 0, the base shift when turning into this orientation) */
+    public int getRelativeX(int orientation, int block) {
+
+        return relativeX_[orientation * BLOCKS + block];
+
+    }
+
+
+    /* Relative y of a block as read in (for block 0, the base shift when turning into this orientation) */
+    public int getRelativeY(int orientation, int block) {
+
+        return relativeY_[orientation * BLOCKS + block];
+
+    }
+
+
+    /* X offset of a placed block from the base position */
+    public int getBlockX(int orientation, int block) {
+
+        return blockX_[orientation * BLOCKS + block];
+
+    }
+
+
+    /* Y offset of a placed block from the base position */
+    public int getBlockY(int orientation, int block) {
+
+        return blockY_[orientation * BLOCKS + block];
+
+    }
+
+
+    /* Bounding box of the placed blocks, relative to the base position */
+    public int getMinX(int orientation) {
+
+        return minX_[orientation];
+
+    }
+
+    public int getMaxX(int orientation) {
+
+        return maxX_[orientation];
+
+    }
+
+    public int getMinY(int orientation) {
+
+        return minY_[orientation];
+
+    }
+
+    public int getMaxY(int orientation) {
+
+        return maxY_[orientation];
+
+    }
+
+
+    /* Number of rows covered by an orientation */
+    public int getRowCount(int orientation) {
+
+        return maxY_[orientation] - minY_[orientation] + 1;
+
+    }
+
+
+    /* Row mask for a row of the bounding box: bit 0 is the column at getMinX(orientation) */
+    public long getRowMask(int orientation, int row) {
+
+        return rowMasks_[orientation * BLOCKS + row];
+
+    }
+
+
+    /* First orientation covering the same cells as this one: orientations with the same one place alike */
+    public int getCanonicalOrientation(int orientation) {
+
+        return canonical_[orientation];
+
+    }
+
+
+    /*
+     * Spawn offsets: add these to the top-left cell a piece should appear at
+     * to get its base position.
+     */
+    public int getSpawnOffsetX(int orientation) {
+
+        return -minX_[orientation];
+
+    }
+
+    public int getSpawnOffsetY(int orientation) {
+
+        return -minY_[orientation];
         
     }
 
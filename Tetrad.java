@@ -1,6 +1,6 @@
 package game;
 
-import java.awt.Point;
+import java.nio.ByteBuffer;
 
 /***
  * 
@@ -15,6 +15,11 @@ import java.awt.Point;
  * Therefore, this object must understand where its four
  * blocks are in relative x/y terms to the board.
  *
+ * The Tetrad keeps its base position as plain ints and reads its
+ * geometry from the Shape tables, and its positions_ only ever point
+ * at the Board's own BoardPositions, so moving, turning, dropping and
+ * lodging a Tetrad never allocates.
+ *
  */
 
 public class Tetrad extends Entity implements TetradMotion {
@@ -28,7 +33,7 @@ public class Tetrad extends Entity implements TetradMotion {
     /* Entity gives access to positions, which holds details of where each block is */
 
     /* Each Tetrad can be free moving or lodged.  When lodged, it cannot move */
-    private Boolean nextTickLodged_; // Lodge permanently on next tick.
+    private boolean nextTickLodged_; // Lodge permanently on next tick.
 
     /* Each Tetrad is a specific shape, and this must be called in the constructor */
     private Shape shape_;
@@ -39,23 +44,27 @@ public class Tetrad extends Entity implements TetradMotion {
      */
     private int orientation_;
 
-    /* Each Tetrad has a pre-defined basePos_, from which other positions are calculated */
-    private BoardPosition basePos_; // This is only set when the piece is placed on the board(!)
+    /* The base position (where block 0 sits), from which other positions are calculated */
+    private int baseX_;
+    private int baseY_;
+
+    /* Whether the Tetrad made it on to the board when it was created */
+    private boolean onBoard_;
 
     /* Boolean to store whether the Tetrad was last turned clockwise -> default True */
-    private Boolean turningClockwise_ = true;
+    private boolean turningClockwise_ = true;
 
     /* Flag if on edge */
-    Boolean flagToMoveRight_ = false;
+    boolean flagToMoveRight_ = false;
 
     /* Flag to move left */
-    Boolean flagToMoveLeft_ = false;
+    boolean flagToMoveLeft_ = false;
 
     /* Boolean to capture whether we have turned on right edge */
-    Boolean onRightEdge_ = false;
+    boolean onRightEdge_ = false;
 
     /* Boolean to capture whether we have turned on left edge */
-    Boolean onLeftEdge_ = false;
+    boolean onLeftEdge_ = false;
 
 
     /** CONSTRUCTOR **/
@@ -71,7 +80,8 @@ public class Tetrad extends Entity implements TetradMotion {
         name_ = thisShape.name();
 
         /* Set the basePosition */
-        basePos_ = basePosition;
+        baseX_ = basePosition.getThisPosition().x;
+        baseY_ = basePosition.getThisPosition().y;
 
         /* Set base orientation to 0 */
         orientation_ = 0;
@@ -82,10 +92,15 @@ public class Tetrad extends Entity implements TetradMotion {
         /* Set the Tetrad to free moving */
         lodged_ = false;
 
-        /* Calculate the locations of the blocks of the Tetrad based on the basePosition */
-        calculatePositionsForDrop(basePos_, 0, 0);
+        /* If there's no room for the Tetrad it never makes it on to the board, and can't move */
+        onBoard_ = !owner_.collides(shape_, orientation_, baseX_, baseY_);
 
-        /* Place the Tetrad */
+        if (!onBoard_) {
+            lodge();
+            return;
+        }
+
+        /* Calculate the locations of the blocks of the Tetrad based on the basePosition, and place it */
         placeTetrad();
 
     }
@@ -95,7 +110,7 @@ public class Tetrad extends Entity implements TetradMotion {
 
     /* Implemented from TetradMotion */
     @Override
-    public Boolean turn(Boolean clockWise) {
+    public boolean turn(boolean clockWise) {
 
         /* Set flags and edges to false */
         setFlagsAndEdgesFalse();
@@ -110,44 +125,52 @@ public class Tetrad extends Entity implements TetradMotion {
         int currentOrientation = orientation_;
 
         /* This is the orientation we are attempting to look at */
-        int newOrientation = currentOrientation;
+        int newOrientation;
 
-        /* Increase orientation by 1 */
-        newOrientation++;
-        if (newOrientation > maxOrientations) newOrientation = 1;
+        if (clockWise) {
 
-        // System.out.format("Current orientation is %d.\n", orientation_);
-        // System.out.format("New orientation is %d.\n",  newOrientation);
+            /* Increase orientation by 1 */
+            newOrientation = currentOrientation + 1;
+            if (newOrientation > maxOrientations) newOrientation = 1;
 
+        } else {
 
-        if (!performTurnCalculationsAndValidation(currentOrientation, newOrientation, clockWise)) return false;
+            /* Orientation 0 is the same as the last orientation: decrease from there */
+            if (currentOrientation == 0) currentOrientation = maxOrientations;
+            newOrientation = currentOrientation - 1;
+            if (newOrientation < 1) newOrientation = maxOrientations;
 
-        return true;
+        }
+
+        // System.out.format("Current orientation is %d.\n", orientation_);
+        // System.out.format("New orientation is %d.\n",  newOrientation);
+
+        return performTurnCalculationsAndValidation(currentOrientation, newOrientation, clockWise);
 
     }
 
     
     /* Run the necessary calculations and validations for whether a turn can be completed */
-    private Boolean performTurnCalculationsAndValidation(int currentOrientation, int newOrientation, Boolean clockWise) {
-
-        /* Arrays to hold new X and Y values */
-        int[] newX = new int[numBlocks];
-        int[] newY = new int[numBlocks];
-
-        /* Set the new base position */
-        BoardPosition newBase = null;
+    private boolean performTurnCalculationsAndValidation(int currentOrientation, int newOrientation, boolean clockWise) {
         
         /* Run exceptions for straightLine */
         straightLineExceptionHandler(currentOrientation);
 
-        /* Calculate and set the new base position */
-        newBase = calculateNewBasePosition(clockWise, newOrientation);
+        /* Calculate the new base position */
+        int newBaseX = calculateNewBaseX(clockWise, currentOrientation, newOrientation);
+        int newBaseY = calculateNewBaseY(clockWise, currentOrientation, newOrientation);
+
+        /* Check the blocks for the new orientation are all free before committing */
+        if (!checkBlocksCanTurn(newBaseX, newBaseY, newOrientation)) {
 
-        /* Check each block to see if it can be set to new position */
-        if (!checkBlocksCanTurn(newX, newY, newBase, currentOrientation, newOrientation)) return false;
+            /* If this is a straight line we moved off the edge to try the turn, move it back */
+            straightLineExceptionHandler_Undo(currentOrientation);
+            return false;
+
+        }
 
         /* If we get to this point, then we know that the piece can move! */
-        commitTurn(newOrientation, currentOrientation, newBase);
+        commitTurn(newOrientation, currentOrientation, newBaseX, newBaseY);
         
         return true;
         
@@ -155,28 +178,15 @@ public class Tetrad extends Entity implements TetradMotion {
     
 
     /* Check the blocks for this shape can turn before committing to a move */
-    private Boolean checkBlocksCanTurn(int[] newX, int[] newY, BoardPosition newBase, int currentOrientation, int newOrientation) {
+    private boolean checkBlocksCanTurn(int newBaseX, int newBaseY, int newOrientation) {
         
-        for (int eachPos = 0; eachPos < numBlocks; eachPos++) {
-
-            // System.out.format("Looking at block %d\n", eachPos);
-
-            /* Set newX, set newY for each position for checking */
-            newX[eachPos] = newBase.getThisPosition().x + shape_.accessRelativePoints()[newOrientation][eachPos].x;
-            newY[eachPos] = newBase.getThisPosition().y + shape_.accessRelativePoints()[newOrientation][eachPos].y;
-
-            if (!checkValidityOfTurn(newX, newY, eachPos)) return false;
-
-            /* Set a reference variable to the position we're looking at */
-            BoardPosition checkHere = owner_.accessPosition(newX[eachPos], newY[eachPos]);
-
-            /* If there is something on this position, and it isn't the current block, return false */
-            if(checkIfPositionAlreadyOccupied(checkHere, newX, newY, eachPos, currentOrientation)) return false;
-
-            /* If this is a straight line and we flagged it at the edge, move right or left */
-            if (flagToMoveRight_) moveRight();
-            if (flagToMoveLeft_) moveLeft();
+        /* Lift the Tetrad off the board so it doesn't collide with itself */
+        removeTetrad();
 
+        if (owner_.collides(shape_, newOrientation, newBaseX, newBaseY)) {
+            // System.out.println("Attempting to turn out of bounds or on to another block.  Aborted.");
+            placeTetrad();
+            return false;
         }
 
         return true;
@@ -184,32 +194,28 @@ public class Tetrad extends Entity implements TetradMotion {
     }
     
 
-    /* Commit to the Turn */
-    private void commitTurn(int newOrientation, int currentOrientation, BoardPosition newBase) {
+    /* Commit to the Turn: the Tetrad has already been lifted off the board */
+    private void commitTurn(int newOrientation, int currentOrientation, int newBaseX, int newBaseY) {
 
         /* Set orientation_ to newOrientation! */
         orientation_ = newOrientation;
 
-        placeTetradInNewPosition(currentOrientation, newBase);
+        placeTetradInNewPosition(currentOrientation, newBaseX, newBaseY);
 
         /* Check if on the bottom, if not, check if lodged */
-        for (BoardPosition p: positions_) {
-            if (p.getThisPosition().y != owner_.getHeight() - 1) checkIfLodged();
-        }
+        if (!onBottomRow()) checkIfLodged();
 
-        System.out.println("Tetrad turned.");
+        // System.out.println("Tetrad turned.");
 
     }
 
 
     /* If all checks complete and valid, place Tetrad in new position */
-    private void placeTetradInNewPosition(int currentOrientation, BoardPosition newBase) {
-
-        /* First remove the Tetrad from the board */
-        removeTetrad();
+    private void placeTetradInNewPosition(int currentOrientation, int newBaseX, int newBaseY) {
 
         /* Set each block to its new position */
-        calculatePositionsForDrop(newBase, 0, 0);
+        baseX_ = newBaseX;
+        baseY_ = newBaseY;
 
         /* Place the Tetrad */
         placeTetrad();
@@ -219,38 +225,6 @@ public class Tetrad extends Entity implements TetradMotion {
     }
 
 
-    /* Check if a BoardPosition is already occupied by another entity */
-    private Boolean checkIfPositionAlreadyOccupied(BoardPosition checkHere, int[] xArray, int[] yArray, int posNum, int currentOrientation) {
-
-        if (checkHere.hasEntity() && checkHere.returnEntityHere().getEntityID() != id_) {
-            System.out.format("Already something on this block [%d, %d].  Aborted.\n", xArray[posNum], yArray[posNum]);
-
-            /* In which case, if this is a straight line, we need to move it back to the right or left*/
-            if (this.shape_ == Shape.STRAIGHTLINE && currentOrientation % 2 == 0 && onRightEdge_) moveRight();
-            if (this.shape_ == Shape.STRAIGHTLINE && currentOrientation % 2 == 0 && onLeftEdge_) moveLeft();
-
-            return true;
-        }
-
-        return false;
-
-    }
-
-
-    /* Check if we are trying to conduct a valid turn.  If not, return false */
-    private Boolean checkValidityOfTurn(int[] newX, int[] newY, int posNum) {
-
-        /* First check that we want to access a valid position: if not, return false */
-        if (newX[posNum] < 0 || newX[posNum] >= owner_.getWidth() || newY[posNum] < 0 || newY[posNum] >= owner_.getHeight()) {
-            System.out.println("Attempting to turn out of bounds.  Aborted.");
-            return false;
-        }
-
-        return true;
-
-    }
-
-
     /* If the piece is a straightLine, move back if within specific regions */
     private void straightLineExceptionHandler_MoveBack(int currentOrientation) {
 
@@ -263,6 +237,15 @@ public class Tetrad extends Entity implements TetradMotion {
     }
 
 
+    /* If the piece is a straightLine that was moved off the edge to try a turn which failed, put it back */
+    private void straightLineExceptionHandler_Undo(int currentOrientation) {
+
+        if (this.shape_ == Shape.STRAIGHTLINE && currentOrientation % 2 == 0 && onRightEdge_) moveRight();
+        if (this.shape_ == Shape.STRAIGHTLINE && currentOrientation % 2 == 0 && onLeftEdge_) moveLeft();
+
+    }
+
+
     /* Set the flags for moves and on edges to false */
     private void setFlagsAndEdgesFalse() {
 
@@ -274,23 +257,25 @@ public class Tetrad extends Entity implements TetradMotion {
     }
 
 
-    /* Calculate new base position for the Tetrad */
-    private BoardPosition calculateNewBasePosition(Boolean clockWise, int newOrientation) {
+    /* Calculate new base x for the Tetrad */
+    private int calculateNewBaseX(boolean clockWise, int currentOrientation, int newOrientation) {
+
+        /* Turning clockwise shifts the base by the new orientation's offset; counter-clockwise undoes the current one */
+        int newBaseX = clockWise ? baseX_ + shape_.getRelativeX(newOrientation, 0)
+                                 : baseX_ - shape_.getRelativeX(currentOrientation, 0);
+
+        if (flagToMoveRight_) newBaseX++;
+
+        return newBaseX;
+
+    }
 
-        BoardPosition newBase = null;
-        if (clockWise) {
-            newBase = new BoardPosition(
-                    positions_[0].getThisPosition().x + shape_.accessRelativePoints()[newOrientation][0].x,
-                    positions_[0].getThisPosition().y + shape_.accessRelativePoints()[newOrientation][0].y);
-
-            if (flagToMoveRight_) {
-                newBase = new BoardPosition(
-                        positions_[0].getThisPosition().x + shape_.accessRelativePoints()[newOrientation][0].x + 1,
-                        positions_[0].getThisPosition().y + shape_.accessRelativePoints()[newOrientation][0].y);
-            }
-        }
 
-        return newBase;
+    /* Calculate new base y for the Tetrad */
+    private int calculateNewBaseY(boolean clockWise, int currentOrientation, int newOrientation) {
+
+        return clockWise ? baseY_ + shape_.getRelativeY(newOrientation, 0)
+                         : baseY_ - shape_.getRelativeY(currentOrientation, 0);
 
     }
 
@@ -310,13 +295,13 @@ public class Tetrad extends Entity implements TetradMotion {
         /* If this is a straight line, stood upright, and it is placed 1 from the edge on the right: giving appearance it could potentially turn */
         if (this.shape_ == Shape.STRAIGHTLINE && currentOrientation % verticalMod == 0) {
 
-            if (positions_[0].getThisPosition().x == owner_.getWidth() - 2) {
+            if (baseX_ == owner_.getWidth() - 2) {
                 /* Move the line one to the left so that we can try turning */
                 this.moveLeft();
                 onRightEdge_ = true;
             }
 
-            if (positions_[0].getThisPosition().x == 1) {
+            if (baseX_ == 1) {
                 /* Move the line two to the right so that we can try turning */
                 this.moveRight();
                 onLeftEdge_ = true;
@@ -333,19 +318,17 @@ public class Tetrad extends Entity implements TetradMotion {
         /* If this is a straight line, lain flat, and it is placed on the right edge */
         if (this.shape_ == Shape.STRAIGHTLINE && currentOrientation % verticalMod == 1) {
 
-            /* Check each position and find if one of the boxes has x of width - 1 */
-            for (BoardPosition p: positions_)
-                if (p.getThisPosition().x == owner_.getWidth() - 1) 
-                    flagToMoveRight_ = true;
+            /* Check if one of the boxes has x of width - 1 */
+            if (baseX_ + shape_.getMaxX(currentOrientation) == owner_.getWidth() - 1)
+                flagToMoveRight_ = true;
 
             /* Are we flagged to move right? */
             if (flagToMoveRight_)
                 onRightEdge_ = true;
 
             /* Check for x = 0 */
-            for (BoardPosition p: positions_)
-                if (p.getThisPosition().x == 0)
-                    flagToMoveLeft_ = true;
+            if (baseX_ + shape_.getMinX(currentOrientation) == 0)
+                flagToMoveLeft_ = true;
 
             /* Are we flagged to move left? */
             if (flagToMoveLeft_) onLeftEdge_ = true;
@@ -355,29 +338,25 @@ public class Tetrad extends Entity implements TetradMotion {
     }
 
     @Override
-    public Boolean turnLeft() {
+    public boolean turnLeft() {
 
         /* Invoke turn counter-clockwise */
-        turn(false);
-
-        return null;
+        return turn(false);
 
     }
 
 
     @Override
-    public Boolean turnRight() {
+    public boolean turnRight() {
 
         /* Invoke turn clockwise */
-        turn(true);
-
-        return null;
+        return turn(true);
 
     }
 
 
     @Override
-    public Boolean dropRow() {
+    public boolean dropRow() {
 
         /* 
          * For each block in the Tetrad, check first if nextTickLodged_ is true
@@ -389,7 +368,7 @@ public class Tetrad extends Entity implements TetradMotion {
 
             /* Permit a shift to left or right */
 
-            lodged_ = true;
+            lodge();
             // System.out.format("Next Tick Lodged.  Cannot drop.\n");
 
             return false;
@@ -419,207 +398,199 @@ public class Tetrad extends Entity implements TetradMotion {
         /* Remove the Tetrad */
         removeTetrad();
 
-        /* Calculate the positions for one row lower */
-        calculatePositionsForDrop(positions_[0], 0, 1);
+        /* One row lower, if there's room */
+        if (!owner_.collides(shape_, orientation_, baseX_, baseY_ + 1)) baseY_++;
 
         /* Place the Tetrad */
         placeTetrad();
 
         /* Console display */
-        System.out.println("Tetrad placed.");
+        // System.out.println("Tetrad placed.");
         
     }
     
     
     @Override
-    public Boolean speedDrop() {
+    public boolean speedDrop() {
+
+        /* The Game can ask for the old row-by-row drop instead */
+        if (owner_.owner_ != null && owner_.owner_.isSoftSpeedDrop()) return softSpeedDrop();
+
+        return hardDrop();
+    }
+
+
+    /* Drop the Tetrad straight to where it lands and lodge it there: return false if already lodged */
+    public boolean hardDrop() {
+
+        if (lodged_) return false;
+
+        /* Lift the Tetrad, work out where it lands, then place it once */
+        removeTetrad();
+        baseY_ += calculateDropDistance();
+        placeTetrad();
+
+        lodge();
+
+        return true;
+
+    }
+
+
+    /* Drop the Tetrad row by row until lodged_, giving the usual tick on landing before it lodges */
+    public boolean softSpeedDrop() {
 
         /* Drop the Tetrad row by row until lodged_ */
         while (!lodged_)
             dropRow();
 
-        return null;
+        return true;
+
     }
 
 
-    /* Calculate the positions of the Tetrad relative to its basePos ONLY WHEN BEING PLACED FIRST TIME */
-    /*                                                               --------------------------------- */
+    /* Get the number of rows the Tetrad would fall before landing (e.g. for a ghost piece) */
+    public int getDropDistance() {
 
-    private void calculatePositionsForDrop(BoardPosition basePosition, int alongX, int alongY) {
+        if (lodged_) return 0;
 
-        /* 
-         * First of all, we have to look at each block in this shape and see if there is a valid space
-         * for it to move into.
-         */
-
-        /* If not valid, return */
-        if (!checkSideEdges(basePosition, alongX)) return;
+        removeTetrad();
+        int distance = calculateDropDistance();
+        placeTetrad();
 
-        /* For initial block */
-        positions_[0] = owner_.accessPosition(
-                basePosition.getThisPosition().x + alongX,
-                basePosition.getThisPosition().y + alongY);
+        return distance;
 
-        for (int blockPiece = 1; blockPiece < numBlocks; blockPiece++) {
+    }
 
-            /* If blockPiece is < 0, display console message */
-            if (blockPiece < 0) System.out.format("blockPiece argument < 0\n");
 
-            /* For relative blocks */
+    /* Work out how far the Tetrad can fall: it must already be lifted off the board */
+    private int calculateDropDistance() {
 
-            /* Clockwise */
-            if (turningClockwise_) {
-                positions_[blockPiece] = owner_.accessPosition(
-                        basePosition.getThisPosition().x + shape_.accessRelativePoints()[orientation_][blockPiece].x + alongX,
-                        basePosition.getThisPosition().y + shape_.accessRelativePoints()[orientation_][blockPiece].y + alongY);
-            } 
-        }
+        /*
+         * If every block is above the top of the stack in its column, the column heights give
+         * the answer straight away: the block with the least room above the stack lands first.
+         */
+        BoardProfile profile = owner_.getProfile();
+        int distance = Integer.MAX_VALUE;
 
-    }
+        for (int blockPiece = 0; blockPiece < numBlocks; blockPiece++) {
 
+            int blockX = baseX_ + shape_.getBlockX(orientation_, blockPiece);
+            int blockY = baseY_ + shape_.getBlockY(orientation_, blockPiece);
 
-    /* Check valid bounds to move left or right: return true if can move */
-    private Boolean checkSideEdges(BoardPosition basePosition, int alongX) {
+            int room = profile.getColumnTop(blockX) - 1 - blockY;
 
-        //System.out.println("Checking side edges.");
+            if (room < 0) {
+                /* Under an overhang: fall back to looking down the packed rows */
+                distance = -1;
+                break;
+            }
 
-        /* Check base isn't out of bounds */
-        if (basePosition.getThisPosition().x + alongX < 0 ||
-                basePosition.getThisPosition().x + alongX > owner_.getWidth() - 1) return false;
+            distance = Math.min(distance, room);
 
-        /* Check that we are not attempting to move any block out of bounds */
-        if (turningClockwise_) {
-            if (!checkBoundValidity(basePosition, alongX)) return false;
         }
 
-        /* Check for entities already on any of the positions to be used */
-        if (existingEntityCheck(basePosition, alongX)) return false;
+        if (distance >= 0 && !owner_.collides(shape_, orientation_, baseX_, baseY_ + distance)) return distance;
 
-        //System.out.println("Check Side Edges returning True.");
-        return true;
+        /* Scan down one row at a time */
+        distance = 0;
+        while (!owner_.collides(shape_, orientation_, baseX_, baseY_ + distance + 1)) distance++;
+
+        return distance;
 
     }
 
-    
-    /* 
-     * Check if there are any entities already on positions that we would like to move a Tetrad to:
-     * return true if already occupied  
-     */
-    private Boolean existingEntityCheck(BoardPosition basePosition, int alongX) {
-        
-        /* Check for an entity on the basePosition */
-        if (owner_.accessPosition(basePosition.getThisPosition().x + alongX, basePosition.getThisPosition().y).hasEntity()) {
-            System.out.println("Entity already on spot trying to move to.  Aborting.");
-            return true;
-        }
 
-        /* Check along each other block in this position */
-        for (int thisBlock = 1; thisBlock < numBlocks; thisBlock++) {
+    /* Set positions_ to the Board's positions for each block, from the base position */
+    private void calculatePositions() {
 
-            /* Clockwise */
-            if (turningClockwise_) {
-                if (owner_.accessPosition(
-                        basePosition.getThisPosition().x + shape_.accessRelativePoints()[orientation_][thisBlock].x + alongX,
-                        basePosition.getThisPosition().y + shape_.accessRelativePoints()[orientation_][thisBlock].y).hasEntity()) 
-                    return true;
-            } 
+        for (int blockPiece = 0; blockPiece < numBlocks; blockPiece++) {
 
-            //System.out.println("Successfully checked along blocks.");
+            positions_[blockPiece] = owner_.accessPosition(
+                    baseX_ + shape_.getBlockX(orientation_, blockPiece),
+                    baseY_ + shape_.getBlockY(orientation_, blockPiece));
 
         }
-        
-        return false;
-        
-    }
-    
-    
-    /* Check that a side edge is not out of bounds for the game board */
-    private Boolean checkBoundValidity(BoardPosition basePosition, int alongX) {
-    
-        for (int thisBlock = 1; thisBlock < numBlocks; thisBlock++) {
-            if (basePosition.getThisPosition().x + shape_.accessRelativePoints()[orientation_][thisBlock].x  + alongX < 0 ||
-                    basePosition.getThisPosition().x + shape_.accessRelativePoints()[orientation_][thisBlock].x + alongX > owner_.getWidth() - 1) {
-                return false;
-            }
-        }
-        
-        return true;
-    
+
     }
 
-    /* Check if the Tetrad is either on top of another Tetrad or has reached the bottom of the Board */
-    private Boolean checkIfLodged() {
 
-        BoardPosition currentPos;
-        BoardPosition belowPos;
+    /* Check if the Tetrad is either on top of another Tetrad: if so, lodge on the next tick (or now, if already due) */
+    private boolean checkIfLodged() {
 
         /* Cycle each blockPiece.  If the blockPiece is above another Tetrad, then we lodge on next tick */
         for (int blockPiece = 0; blockPiece < numBlocks; blockPiece++) {
 
-            currentPos = positions_[blockPiece];
+            int belowX = baseX_ + shape_.getBlockX(orientation_, blockPiece);
+            int belowY = baseY_ + shape_.getBlockY(orientation_, blockPiece) + 1;
 
-            //System.out.format("Currently on [%d, %d]\n", currentPos.getThisPosition().x, currentPos.getThisPosition().y);
+            // If there is an entity on the tile below and it is NOT the same entity as this... Or on bottom row
+            // (subtract 1 from getHeight, as we are accessing an array)
+            if (belowY == owner_.getHeight() || blockBelowIsLodged(belowX, belowY)) {
+
+                lodgeCheck();
+                return true;
 
-            /* If this position x or y is < 0, return true */
-            if (currentPos.getThisPosition().x < 0 || currentPos.getThisPosition().y < 0) {
-                System.out.println("INVALID POSITION! ABORTING.");
-                System.exit(99);
             }
 
-            belowPos = owner_.accessPosition(currentPos.getThisPosition().x, currentPos.getThisPosition().y + 1);
+        }
 
-            // If there is an entity on the tile below and it is NOT the same entity as this... Or on bottom row
-            // (subtract 1 from getHeight, as we are accessing an array)
-            if ((belowPos.hasEntity() && this.getEntityID() != belowPos.returnEntityHere().getEntityID()
-                    && belowPos.returnEntityHere().entityLodgeCheck()) ||
-                    currentPos.getThisPosition().y == owner_.getHeight() - 1) {   
+        // We have moved to a position that won't lodge, so reset nextTickLodged_
+        // System.out.println("Can't lodge in this position.  Continue dropping.");
+        nextTickLodged_ = false;
 
-                if (lodgeCheck(currentPos)) return true;
+        return false; 
 
-            } else {
+    }
 
-                // We have moved to a position that won't lodge, so reset nextTickLodged_
-                // System.out.println("Can't lodge in this position.  Continue dropping.");
-                nextTickLodged_ = false;
 
-            }
+    /* Check whether the cell at (xPos, yPos) holds a lodged block belonging to another entity */
+    private boolean blockBelowIsLodged(int xPos, int yPos) {
 
-        }
+        if (!owner_.isOccupied(xPos, yPos)) return false;
 
-        return false; 
+        Entity below = owner_.accessEntity(xPos, yPos);
+        return below != this && (below == null || below.entityLodgeCheck());
 
     }
 
 
     /* Check if a piece is lodged */
-    private Boolean lodgeCheck(BoardPosition currentPos) {
+    private void lodgeCheck() {
      
         // If we have not set to lodge on next tick...
         if (!nextTickLodged_) {
             // Set to lodge permanently on the next tick
-            System.out.println("Setting nextTickLodged_ to true.");
+            // System.out.println("Setting nextTickLodged_ to true.");
             nextTickLodged_ = true;
-            // UNLESS:: WE ARE ABOVE Y = 4, IN WHICH CASE, EXIT!
-            if (currentPos.getThisPosition().y < 4) {
-                // System.out.println("Game Over -> Lodged Above Row 4");
-            }
-            return true;
         } else {
             // Lodge permanently
-            lodged_ = true;
-            return true;
+            lodge();
         }
         
     }
     
     
+    /* Lodge the Tetrad permanently, handing its blocks over to the Board's stack */
+    private void lodge() {
+
+        if (lodged_) return;
+
+        lodged_ = true;
+        owner_.lodgeTetrad(this);
+        
+    }
+    
+    
     /* Set Tetrad on BoardPositions: switches values of BoardPosition to hasEntity_ and name of entity */
     private void placeTetrad() {
 
-        for (BoardPosition p: positions_) {
+        calculatePositions();
 
-            p.setHasEntity(true);
-            p.setEntityHere(this);
+        for (int blockPiece = 0; blockPiece < numBlocks; blockPiece++) {
+
+            owner_.placeBlock(baseX_ + shape_.getBlockX(orientation_, blockPiece),
+                    baseY_ + shape_.getBlockY(orientation_, blockPiece), this);
 
         }
 
@@ -629,27 +600,19 @@ public class Tetrad extends Entity implements TetradMotion {
     /* Remove Tetrad from BoardPositions */
     private void removeTetrad() {
 
-        for (BoardPosition p: positions_) {
+        for (int blockPiece = 0; blockPiece < numBlocks; blockPiece++) {
 
-            p.setHasEntity(false);
-            p.setEntityHere(null);
+            owner_.clearBlock(baseX_ + shape_.getBlockX(orientation_, blockPiece),
+                    baseY_ + shape_.getBlockY(orientation_, blockPiece));
 
         }
     }
 
 
     /* If the Tetrad is on the bottom row, return true */
-    private Boolean onBottomRow() {
-
-        for (BoardPosition p: positions_) {
-
-            if (p.getThisPosition().y == owner_.getHeight() - 1) {
-                return true;
-            }
+    private boolean onBottomRow() {
 
-        }
-
-        return false;
+        return baseY_ + shape_.getMaxY(orientation_) == owner_.getHeight() - 1;
 
     }
 
@@ -662,126 +625,108 @@ public class Tetrad extends Entity implements TetradMotion {
     }
 
 
-    /* Set the orientation to a specific value: return true if complete */
-    private Boolean setOrientation(int setTo) {
-
-        orientation_ = setTo;
-        return true;
-
-    }
-
-
     /* Move the Tetrad along the x-axis */
     @Override
-    public Boolean move(int alongX) {
+    public boolean move(int alongX) {
 
         /* 
          * alongX is the number of points along the axis we are going to move.
          * +ive == right, -ive == left.
          */
 
-        /* If this Tetrad is not displayed, do not permit a move */
-
         /* If this piece is lodged, then return without doing anything */
         if (lodged_) return false;
 
-        //if (!isDisplayed()) return false;
-
-        BoardPosition checkHere = new BoardPosition(positions_[0].getThisPosition().x, positions_[0].getThisPosition().y);
-
-        relocateTetradHorizontally(checkHere, alongX);
+        boolean moved = relocateTetradHorizontally(alongX);
         
         /* Now that the Tetrad is placed, do a check to see if we need to reset lodged_, if not on bottom row */
-        boolean onBottom = false;
+        stackingTetradLodgeCheck(onBottomRow());
 
-        for (BoardPosition p: positions_) 
-            if (p.getThisPosition().y == owner_.getHeight() - 1) onBottom = true;
-
-        stackingTetradLodgeCheck(onBottom);
-        
-        return true;
+        return moved;
 
     }
 
     
-    /* If Tetrad on top of another Tetrad, check to ensure lodged_ marker is set appropriately */
-    private void stackingTetradLodgeCheck(Boolean onBottom) {
+    /* If Tetrad has moved off the bottom row, it gets a fresh tick before lodging */
+    private void stackingTetradLodgeCheck(boolean onBottom) {
         
-        if (!onBottom) {
-
-            /* 
-             * Check each piece to see if there's one immediately below it. 
-             * If there is, mark nextTickLodged_ true, else false.
-             */
-
-            for (BoardPosition p: positions_) {
-
-                BoardPosition next = new BoardPosition(p.getThisPosition().x, p.getThisPosition().y);
-                next.getThisPosition().y += 1;
-
-                if (next.hasEntity() && next.returnEntityHere().getEntityID() != this.id_) {
-                    if (nextTickLodged_) lodged_ = true;
-                }
-
-            }
-
-            /* If all spaces are clear, remove nextTickLodged marker */
-            nextTickLodged_ = false;
-
-        }
+        /* Whether or not there's something below, a sideways move resets the nextTickLodged_ marker */
+        if (!onBottom) nextTickLodged_ = false;
 
     }
     
     
-    /* Relocate a Tetrad on the board horizontally (i.e. after move left / right) */
-    private void relocateTetradHorizontally(BoardPosition checkHere, int alongX) {
+    /* Relocate a Tetrad on the board horizontally (i.e. after move left / right): return true if moved */
+    private boolean relocateTetradHorizontally(int alongX) {
         
         removeTetrad();
-        calculatePositionsForDrop(checkHere, alongX, 0);
+
+        boolean canMove = !owner_.collides(shape_, orientation_, baseX_ + alongX, baseY_);
+        if (canMove) baseX_ += alongX;
+
         placeTetrad();
 
+        return canMove;
+
     }
 
     /* Move one block to the left */
     @Override
-    public Boolean moveLeft() {
+    public boolean moveLeft() {
 
         /* If this move is valid, return true */
-        if (move(-1)) return true;
-
-        return false;
+        return move(-1);
 
     }
 
 
     /* Move one block to the right */
     @Override
-    public Boolean moveRight() {
+    public boolean moveRight() {
 
         /* If this move is valid, return true */
-        if (move(1)) return true;
-
-        return false;
+        return move(1);
 
     }
 
 
     /* Return a Boolean value confirming whether this piece is lodged or not */
-    public Boolean isLodged() {
+    public boolean isLodged() {
 
         /* Check whether it is lodged above line 4 -> if so, exit */
-        for (BoardPosition p: positions_) {
-            if (lodged_ && p.getThisPosition().y < 4) {
-                System.out.println("Busted!");
-                owner_.owner_.accessDisplay().directAccessToDisplay().signalEnded();
-            }
-        }
+        if (lodged_ && getTopRow() < 4) owner_.owner_.signalGameOver();
 
         return lodged_;
 
     }
 
 
+    /* Get the positions of the blocks of this Tetrad */
+    public BoardPosition[] getPositions() {
+
+        return positions_;
+
+    }
+
+
+    /* Get the highest row (smallest y) covered by this Tetrad */
+    public int getTopRow() {
+
+        if (!onBoard_) return -1;
+        return baseY_ + shape_.getMinY(orientation_);
+
+    }
+
+
+    /* Get the lowest row (largest y) covered by this Tetrad */
+    public int getBottomRow() {
+
+        if (!onBoard_) return -1;
+        return baseY_ + shape_.getMaxY(orientation_);
+
+    }
+
+
     /* Get the shape of this Tetrad */
     public Shape getShape() {
 
@@ -791,25 +736,80 @@ public class Tetrad extends Entity implements TetradMotion {
 
 
     /* Check that the Tetrad is in display before it can be moved */
-    public Boolean isDisplayed() {
+    public boolean isDisplayed() {
 
-        /* For each board position */
-        for (BoardPosition p : positions_) {
+        /* If the top y value is <= 5 (top six rows not shown), return false */
+        return getTopRow() > 5;
 
-            /* If the y value is <= 5 (top six rows not shown), return false */
-            if (p.getThisPosition().y <= 5) return false;
+    }
 
-        }
 
-        return true;
+    /* Get the position of the Tetrad */
+    public BoardPosition getBasePosition() {
+
+        return owner_.accessPosition(baseX_, baseY_);
 
     }
 
 
-    /* Get the position of the Tetrad */
-    public BoardPosition getBasePosition() {
+    /* Write the state of this Tetrad to a snapshot */
+    void saveState(ByteBuffer snapshot) {
+
+        snapshot.put((byte) shape_.ordinal());
+        snapshot.put((byte) orientation_);
+        snapshot.putInt(baseX_);
+        snapshot.putInt(baseY_);
+        snapshot.putInt(id_);
+        snapshot.put((byte) ((lodged_ ? 1 : 0) | (nextTickLodged_ ? 2 : 0) | (onBoard_ ? 4 : 0)
+                | (turningClockwise_ ? 8 : 0)));
+
+    }
+
+
+    /*
+     * Take on the state written by saveState(), reusing this Tetrad.  Its blocks are already on
+     * the restored board, so this only points the Tetrad (and the board's cells) at them.
+     */
+    void restoreState(ByteBuffer snapshot) {
+
+        shape_ = Shape.fromOrdinal(snapshot.get());
+        name_ = shape_.name();
+        orientation_ = snapshot.get();
+        baseX_ = snapshot.getInt();
+        baseY_ = snapshot.getInt();
+        id_ = snapshot.getInt();
+
+        int flags = snapshot.get();
+        lodged_ = (flags & 1) != 0;
+        nextTickLodged_ = (flags & 2) != 0;
+        onBoard_ = (flags & 4) != 0;
+        turningClockwise_ = (flags & 8) != 0;
+
+        setFlagsAndEdgesFalse();
+
+        if (!onBoard_) return;
+
+        calculatePositions();
+
+        for (int blockPiece = 0; blockPiece < numBlocks; blockPiece++)
+            owner_.setEntity(baseX_ + shape_.getBlockX(orientation_, blockPiece),
+                    baseY_ + shape_.getBlockY(orientation_, blockPiece), this);
+
+    }
+
+
+    /* Get the x of the base position */
+    public int getBaseX() {
+
+        return baseX_;
+
+    }
+
+
+    /* Get the y of the base position */
+    public int getBaseY() {
 
-        return basePos_;
+        return baseY_;
 
     }
 
@@ -0,0 +1,171 @@
+package game;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.ThreadMXBean;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class checks that moving, turning, dropping and lodging a Tetrad
+ * allocates nothing.  It plays a million random inputs on headless games,
+ * straight on the current piece, and measures the bytes this thread
+ * allocated while doing so with the ThreadMXBean.  Bringing on the next
+ * piece and starting a new game do allocate (a new Tetrad, a new Board),
+ * so they are measured separately and left out.
+ *
+ * Every round plays the same inputs on the same games, so code that
+ * allocates does so in every round.  The JVM allocates a little of its own
+ * against the thread, once, as it first compiles each class (the class's
+ * string constants), and that can fall in any round.  So rounds are played
+ * until one allocates nothing, and the check fails (exit status 1) only if
+ * none of MAX_ROUNDS does.
+ *
+ */
+
+public class TetradAllocationCheck {
+
+    /* Inputs played in each round */
+    public static final int DEFAULT_INPUTS = 1000000;
+
+    /* Most rounds played looking for one that allocates nothing */
+    public static final int MAX_ROUNDS = 10;
+
+    /* Board size played on */
+    private static final int BOARD_WIDTH = 12;
+    private static final int BOARD_HEIGHT = 26;
+
+    /* This thread's allocation counter */
+    private final ThreadMXBean threads_ = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final long threadID_ = Thread.currentThread().getId();
+
+    /* Where the inputs come from, and the seed each round starts from */
+    private final Xoshiro256 random_;
+    private final long seed_;
+
+    /* Game being played */
+    private Game game_;
+
+    /* Pieces lodged and games played in the last round */
+    private long lodged_;
+    private long games_;
+
+
+    /** CONSTRUCTOR **/
+    public TetradAllocationCheck(long seed) {
+
+        random_ = new Xoshiro256(seed);
+        seed_ = seed;
+
+    }
+
+
+    /** METHODS **/
+
+    /* Play a round of random inputs on the current piece: returns the bytes allocated by them */
+    public long play(int numInputs) {
+
+        /* Every round starts from the same seed, so plays the same inputs */
+        random_.setSeed(seed_);
+        lodged_ = 0;
+        games_ = 0;
+        newGame();
+
+        long allocated = 0;
+        long before = allocatedBytes();
+
+        for (int eachInput = 0; eachInput < numInputs; eachInput++) {
+
+            Tetrad piece = game_.getCurrentPiece();
+
+            switch (random_.nextInt(6)) {
+                case 0: piece.moveLeft(); break;
+                case 1: piece.moveRight(); break;
+                case 2: piece.turnLeft(); break;
+                case 3: piece.turnRight(); break;
+                default: piece.dropRow(); break;
+            }
+
+            /* Once it lodges, the next piece is brought on (or a new game started) outside the count */
+            if (piece.isLodged()) {
+                allocated += allocatedBytes() - before;
+                bringOnNext(piece);
+                before = allocatedBytes();
+            }
+
+        }
+
+        return allocated + allocatedBytes() - before;
+
+    }
+
+
+    /* Let the game clear lines and bring on the next piece (after any entry delay): start a new game if this one is over */
+    private void bringOnNext(Tetrad lodgedPiece) {
+
+        lodged_++;
+
+        boolean inPlay = true;
+        while (inPlay && game_.getCurrentPiece() == lodgedPiece) inPlay = game_.step(GameInput.NONE);
+
+        if (!inPlay || game_.getCurrentPiece().isLodged()) newGame();
+
+    }
+
+
+    /* Start a new headless game */
+    private void newGame() {
+
+        game_ = new Game(BOARD_WIDTH, BOARD_HEIGHT, PieceGenerator.create(PieceGenerator.BAG, random_.nextLong()));
+        games_++;
+
+    }
+
+
+    /* Get the bytes this thread has allocated so far */
+    private long allocatedBytes() {
+
+        return threads_.getThreadAllocatedBytes(threadID_);
+
+    }
+
+
+    /* Get the number of pieces lodged in the last round */
+    public long getLodged() {
+
+        return lodged_;
+
+    }
+
+
+    /* Get the number of games played in the last round */
+    public long getGames() {
+
+        return games_;
+
+    }
+
+
+    public static void main(String[] args) {
+
+        int numInputs = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_INPUTS;
+
+        TetradAllocationCheck check = new TetradAllocationCheck(1);
+
+        int rounds = 0;
+        long allocated;
+
+        do {
+            allocated = check.play(numInputs);
+            rounds++;
+        } while (allocated != 0 && rounds < MAX_ROUNDS);
+
+        System.out.format("%d inputs, %d pieces lodged over %d games: %d bytes allocated in round %d%n",
+                numInputs, check.getLodged(), check.getGames(), allocated, rounds);
+
+        if (allocated != 0) System.exit(1);
+
+    }
+
+}
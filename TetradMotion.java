@@ -19,29 +19,29 @@ public interface TetradMotion {
      * to confirm whether move was successful or not.
      */
     
-    public Boolean turn(Boolean clockWise);
-    public Boolean turnLeft();
-    public Boolean turnRight();
+    public boolean turn(boolean clockWise);
+    public boolean turnLeft();
+    public boolean turnRight();
 
     
     /*
      * Move the Tetrad along the x-axis by the amount specified in alongX 
      */
-    public Boolean move(int alongX);
+    public boolean move(int alongX);
     
     /* Short hand to move left or move right */
-    public Boolean moveLeft();
-    public Boolean moveRight();
+    public boolean moveLeft();
+    public boolean moveRight();
     
     /*
      * Descend one block depth
      */
-    public Boolean dropRow();
+    public boolean dropRow();
     
     /*
      * Force the block to quickly drop to the nearest lodge point.
      */
     
-    public Boolean speedDrop();
+    public boolean speedDrop();
 
 }
@@ -8,6 +8,7 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.util.ArrayList;
@@ -20,6 +21,7 @@ import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 /***
  * 
@@ -67,6 +69,12 @@ public class TetronimoDisplay extends JPanel {
     /* Other dimensions for the board window */
     int boardWidth_, boardHeight_, boxWidth_, boxHeight_;
 
+    /* Repaints the display for as long as anything on the game's timeline is playing (~60 frames a second) */
+    Timer animationTimer_;
+
+    /* Time this frame is being drawn for */
+    long frameTime_;
+
 
     /** CONSTRUCTOR **/
     public TetronimoDisplay(TetronimoWindow holder) {
@@ -86,6 +94,12 @@ public class TetronimoDisplay extends JPanel {
         /* Set background to red -> definitively know it's there */
         this.setBackground(Color.WHITE);
 
+        animationTimer_ = new Timer(16, new ActionListener() {
+            public void actionPerformed(ActionEvent arg0) {
+                repaint();
+            }
+        });
+
         repaint();
 
     }
@@ -200,15 +214,15 @@ public class TetronimoDisplay extends JPanel {
         for (int row = 6; row < y; row++) {
             for (int column = 0; column < x; column++) {
 
-                if (thisGame_.getBoard().accessPosition(column, row).hasEntity()) {
+                if (thisGame_.getBoard().isOccupied(column, row)) {
 
-                    setColourForEntity(g, thisGame_.getBoard().accessPosition(column, row));
+                    setColourForEntity(g, thisGame_.getBoard().accessCellShape(column, row));
 
                     /* If the game is paused, change the colour to black */
                     if (thisGame_.accessDisplay().isPaused()) g.setColor(Color.BLACK);
 
-                    /* If this is the flashRow_ number and flash is on, set paint to white */
-                    if (thisGame_.getFlash() && (row == thisGame_.getFlashRow()))  
+                    /* If this row is flashed on at the moment, set paint to white */
+                    if (thisGame_.getTimeline().isFlashedOn(row, frameTime_))  
                         g.setColor(Color.WHITE);
 
 
@@ -224,30 +238,36 @@ public class TetronimoDisplay extends JPanel {
     }
     
     
-    /* Set the colour to draw an entity with, based on its name */
-    private void setColourForEntity(Graphics2D g, BoardPosition thisPoint) {
+    /* Set the colour to draw an entity with, based on the shape recorded for its cell */
+    private void setColourForEntity(Graphics2D g, Shape cellShape) {
+       
+        /* Blocks that aren't part of a Tetrad are drawn black */
+        if (cellShape == null) {
+            g.setColor(Color.BLACK);
+            return;
+        }
        
         /* Switch colour of fill based on entity */
-        switch(thisPoint.returnEntityHere().getName()) {
-        case "STRAIGHTLINE":
+        switch(cellShape) {
+        case STRAIGHTLINE:
             g.setColor(Color.BLUE);
             break;
-        case "S":
+        case S:
             g.setColor(Color.GREEN);
             break;
-        case "Z":
+        case Z:
             g.setColor(Color.RED);
             break;
-        case "BOX":
+        case BOX:
             g.setColor(Color.YELLOW);
             break;
-        case "J":
+        case J:
             g.setColor(Color.PINK);
             break;
-        case "L":
+        case L:
             g.setColor(Color.CYAN);
             break;
-        case "T":
+        case T:
             g.setColor(Color.ORANGE);
             break;
         default:
@@ -369,6 +389,12 @@ public class TetronimoDisplay extends JPanel {
 
         super.paintComponent(g2d);
 
+        /* Flashes are worked out for the time this frame is drawn: keep drawing while any are playing */
+        frameTime_ = System.nanoTime();
+        boolean animating = thisGame_.getTimeline().isActive(frameTime_);
+        if (animating && !animationTimer_.isRunning()) animationTimer_.start();
+        if (!animating && animationTimer_.isRunning()) animationTimer_.stop();
+
         /* Paint the background */
         displayBackground(g2d);
 
@@ -380,14 +406,14 @@ public class TetronimoDisplay extends JPanel {
             startScreen(g2d);
         }
 
-        /* If flagged to show the end screen */
-        if (showEnd_) {
+        /* If flagged to show the end screen (once the game over flash has played out) */
+        if (showEnd_ && !animating) {
             endScreen(g2d);
         }
 
 
-        /* If not showing start and not showing end, then game is playing */
-        if (thisGame_.inPlay()) {
+        /* If not showing start and not showing end, then game is playing (or its last flash is) */
+        if (thisGame_.inPlay() || (showEnd_ && animating)) {
 
             /* Paint the score details and board */
             if (showScore_) displayScore(g2d, thisGame_.getGameScore());
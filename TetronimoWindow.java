@@ -1,11 +1,8 @@
 package game;
 
 import java.awt.Dimension;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import javax.swing.Timer;
 import javax.swing.WindowConstants;
 import javax.swing.JFrame;
 
@@ -18,7 +15,7 @@ import javax.swing.JFrame;
  *
  */
 
-public class TetronimoWindow extends JFrame {
+public class TetronimoWindow extends JFrame implements GameListener {
 
     /* Reference variable to the game run in this window */
     Game owner_;
@@ -33,13 +30,9 @@ public class TetronimoWindow extends JFrame {
     Boolean moveRightKeyPressedAlready_ = false;
     Boolean turnKeyPressedAlready_ = false;
     Boolean speedDropKeyPressedAlready_ = false;
+    Boolean hardDropKeyPressedAlready_ = false;
     Boolean pauseKeyPressedAlready_ = false;
     
-    /* Timer reference for auto moves left and right, as well as speedDrop */
-    Timer autoLeft_;
-    Timer autoRight_;
-    Timer speedDrop_;
-    
     
     
     /** CONSTRUCTOR **/
@@ -137,91 +130,21 @@ public class TetronimoWindow extends JFrame {
                 
                 char keyChar = e.getKeyChar();
 
-                
-                /* ActionListener for moving left */
-                ActionListener autoMoveLeft = new ActionListener() {
-
-                    public void actionPerformed(ActionEvent onStart) {
-                        
-                        owner_.getCurrentPiece().moveLeft();
-                        gameDisplay_.repaint();
-                        
-                    }
-                    
-                };
-                
-                /* If we are not registered as going left and game isn't paused */
-                if (!moveLeftKeyPressedAlready_) {
-                    /* And the user is pressing the key to go left */
-                    if (keyChar == 'a' || keyChar == 'A') {
-                        /* Force moveRight to deactivate */
-                        moveRightKeyPressedAlready_ = false;
-                        if (autoRight_ != null) autoRight_.stop();
-                        
-                        /* And we are not registered as going right */
-                        if (!moveRightKeyPressedAlready_) {
-                            moveLeftKeyPressedAlready_ = true;
-                            System.out.println("Pressed 'a'");
-                            /* If the game isn't paused */
-                            if (!pauseKeyPressedAlready_) {
-                            owner_.getCurrentPiece().moveLeft();
-                            gameDisplay_.repaint();
-
-                            /* 
-                             * While the key is pressed, auto refresh the move and 
-                             * repaint the panel every 60ms 
-                             */
-                            
-                            /** DROP SPEED / INCREASE SPEED -> KEY PRESS **/
-                            autoLeft_ = new Timer(120, autoMoveLeft);
-                            autoLeft_.start();
-                            }
-                        }
-                    }
+                /*
+                 * Move and speed drop keys are reported to the game as held down: the game moves
+                 * the piece straight away, then repeats for as long as the key stays down.  The
+                 * flags just stop the keyboard's own auto-repeat posting the key again.
+                 */
+                if (!moveLeftKeyPressedAlready_ && (keyChar == 'a' || keyChar == 'A')) {
+                    moveLeftKeyPressedAlready_ = true;
+                    System.out.println("Pressed 'a'");
+                    owner_.postInput(GameInput.KEY_DOWN | GameInput.MOVE_LEFT);
                 }
 
-                
-                /* ActionListener for moving right */
-                ActionListener autoMoveRight = new ActionListener() {
-
-                    public void actionPerformed(ActionEvent onStart) {
-                        
-                        owner_.getCurrentPiece().moveRight();
-                        gameDisplay_.repaint();
-                        
-                    }
-                    
-                };
-
-                
-                /* If we are not registered as going right and game isn't paused */
-                if (!moveRightKeyPressedAlready_) {
-                    /* And the user is pressing the key to go right */
-                    if (keyChar == 'd' || keyChar == 'D') {
-                        /* Force moveLeft to deactivate */
-                        moveLeftKeyPressedAlready_ = false;
-                        if (autoLeft_ != null) autoLeft_.stop();
-                        
-                        /* And we are not registered as going left */
-                        if (!moveLeftKeyPressedAlready_) {
-                            System.out.println("Pressed 'd'");
-                            moveRightKeyPressedAlready_ = true;
-                            /* If not paused, move the piece */
-                            if (!pauseKeyPressedAlready_) {
-                            owner_.getCurrentPiece().moveRight();
-                            gameDisplay_.repaint();
-
-                            /* 
-                             * While the key is pressed, auto refresh the move and 
-                             * repaint the panel every 60ms 
-                             */
-                            
-                            /** DROP SPEED / INCREASE SPEED -> KEY PRESS **/
-                            autoRight_ = new Timer(120, autoMoveRight);
-                            autoRight_.start();
-                            }
-                        }
-                    }
+                if (!moveRightKeyPressedAlready_ && (keyChar == 'd' || keyChar == 'D')) {
+                    moveRightKeyPressedAlready_ = true;
+                    System.out.println("Pressed 'd'");
+                    owner_.postInput(GameInput.KEY_DOWN | GameInput.MOVE_RIGHT);
                 }
 
                 
@@ -230,43 +153,24 @@ public class TetronimoWindow extends JFrame {
                     if (keyChar == 'w' || keyChar == 'W') {
                         turnKeyPressedAlready_ = true;
                         System.out.println("Pressed 'w'");
-                        owner_.getCurrentPiece().turnRight();
-                        gameDisplay_.repaint();
-
+                        owner_.postInput(GameInput.TURN_RIGHT);
                     }
 
                 
-                /* ActionListener for speedDrop */
-                ActionListener speedDrop = new ActionListener() {
-
-                    public void actionPerformed(ActionEvent onStart) {
-                        
-                        owner_.getCurrentPiece().dropRow();
-                        gameDisplay_.repaint();
-                        
-                    }
-                    
-                };
+                /* Speed drop */
+                if (!speedDropKeyPressedAlready_ && (keyChar == 's' || keyChar == 'S')) {
+                    speedDropKeyPressedAlready_ = true;
+                    System.out.println("Pressed 's'");
+                    owner_.postInput(GameInput.KEY_DOWN | GameInput.SOFT_DROP);
+                }
                 
-                /* If game isn't paused, speed drop */
-                if (!speedDropKeyPressedAlready_ && !pauseKeyPressedAlready_)
-                    if (keyChar == 's' || keyChar == 'S') {
-                        speedDropKeyPressedAlready_ = true;
-                        System.out.println("Pressed 's'");
-                        
-                        if (!pauseKeyPressedAlready_) {
-                        if (owner_.getCurrentPiece() != null) owner_.getCurrentPiece().dropRow();
-                        gameDisplay_.repaint();
-                        /* 
-                         * While the key is pressed, auto refresh the move and 
-                         * repaint the panel every 60ms 
-                         */
-                        
-                        /** DROP SPEED / INCREASE SPEED -> KEY PRESS **/
-                        speedDrop_ = new Timer(owner_.getCurrentSpeed() / 5, speedDrop);
-                        speedDrop_.start();
-                        }
-                    }
+                
+                /* Hard drop (row by row if the game is set to soft speed drop) if not paused */
+                if (!hardDropKeyPressedAlready_ && !pauseKeyPressedAlready_ && keyChar == ' ') {
+                    hardDropKeyPressedAlready_ = true;
+                    System.out.println("Pressed space");
+                    owner_.postInput(GameInput.HARD_DROP);
+                }
                 
                 
                 /* PAUSE EVERYTHING */
@@ -278,17 +182,8 @@ public class TetronimoWindow extends JFrame {
                        
                         System.out.println("Pressed 'p'");
                         
-                        /* Stop the game tick */
-                        owner_.tick.stop();
-                        
-                        /* If speed drop running, stop the tick */
-                        if (speedDrop_ != null) { 
-                            if (speedDrop_.isRunning()) speedDrop_.stop();
-                        }
-                        
-                        /* If moving left, stop the tick */
-                        if (autoLeft_ != null) autoLeft_.stop();
-                        if (autoRight_ != null) autoRight_.stop();
+                        /* Pause the game: held keys stop repeating until it starts again */
+                        owner_.postInput(GameInput.PAUSE);
                         
                     }
                 } else {
@@ -301,14 +196,10 @@ public class TetronimoWindow extends JFrame {
                         
                         System.out.println("Pressed 'p'");
                         
-                        /* Start the game tick again */
-                        owner_.tick.start();
+                        /* Start the game again */
+                        owner_.postInput(GameInput.RESUME);
                         //owner_.getCurrentPiece().dropRow();
                         
-                        /* Check what is being pressed */
-                        if (moveLeftKeyPressedAlready_ && !moveRightKeyPressedAlready_) autoLeft_.start();
-                        if (moveRightKeyPressedAlready_ && !moveLeftKeyPressedAlready_) autoRight_.start();
-                        
                     }
                     
                 }
@@ -325,27 +216,13 @@ public class TetronimoWindow extends JFrame {
                 if (e.getKeyChar() == 'a' || e.getKeyChar() == 'A') 
                     if (moveLeftKeyPressedAlready_) {
                         moveLeftKeyPressedAlready_ = false;
-                        if (autoLeft_ != null) {
-                            autoLeft_.stop();
-                            gameDisplay_.repaint();
-                        }
-                        /* Check to see if the right move key has been pressed! */
-                        if (moveRightKeyPressedAlready_) {
-                            autoRight_.start();
-                        }
+                        owner_.postInput(GameInput.KEY_UP | GameInput.MOVE_LEFT);
                     }
 
                 if (e.getKeyChar() == 'd' || e.getKeyChar() == 'D')  
                     if (moveRightKeyPressedAlready_) {
                         moveRightKeyPressedAlready_ = false;
-                        if (autoRight_ != null) {
-                            autoRight_.stop();
-                            gameDisplay_.repaint();
-                        }
-                        /* Check to see if the right move key has been pressed! */
-                        if (moveLeftKeyPressedAlready_) {
-                            autoRight_.start();
-                        }
+                        owner_.postInput(GameInput.KEY_UP | GameInput.MOVE_RIGHT);
                     }
 
                 if (e.getKeyChar() == 'w' || e.getKeyChar() == 'W')
@@ -354,11 +231,12 @@ public class TetronimoWindow extends JFrame {
                 if (e.getKeyChar() == 's' || e.getKeyChar() == 'S') 
                     if (speedDropKeyPressedAlready_) {
                         speedDropKeyPressedAlready_ = false;
-                        if (speedDrop_ != null) {
-                            speedDrop_.stop();
-                        }
+                        owner_.postInput(GameInput.KEY_UP | GameInput.SOFT_DROP);
                     }
 
+                if (e.getKeyChar() == ' ')
+                    if (hardDropKeyPressedAlready_) hardDropKeyPressedAlready_ = false;
+
             }
 
             @Override
@@ -369,46 +247,6 @@ public class TetronimoWindow extends JFrame {
 
         });
     }
-
-    /** Check KeyListener status **/
-
-    /* Checks the status of key presses and permits repeated turns on each tick, automatically -> movement only */
-    public void checkKeyPressedStatus() {
-
-        /* If there is a KeyListener, then the one we want is [0] */
-        if (this.getKeyListeners() != null) {
-            
-            /* If pause is registered: pause */
-            if (pauseKeyPressedAlready_) return;
-            
-            /* 
-             * If both moveLeft and moveRight are somehow registered as pressed,
-             * return without doing anything.
-             */
-            if (moveLeftKeyPressedAlready_ && moveRightKeyPressedAlready_) {
-                return;
-            }
-            
-            /* If moveLeft key is pressed */
-            if (moveLeftKeyPressedAlready_) {
-                /* Move the piece left and redraw board */
-                owner_.getCurrentPiece().moveLeft();
-                this.gameDisplay_.repaint();
-                return;
-            }
-            
-            /* If moveRight key is pressed */
-            if (moveRightKeyPressedAlready_) {
-                /* Move the piece right and redraw board */
-                owner_.getCurrentPiece().moveRight();
-                this.gameDisplay_.repaint();
-                return;
-            }
-            
-        }
-
-    }
-
     
     /* Send true if game paused, false if running */
     public Boolean isPaused() {
@@ -418,6 +256,22 @@ public class TetronimoWindow extends JFrame {
         
     }
     
+    /* The game has changed: redraw it */
+    public void boardChanged(Game thisGame) {
+
+        gameDisplay_.repaint();
+
+    }
+
+
+    /* The game is over: show the Game Over screen */
+    public void gameEnded(Game thisGame) {
+
+        gameDisplay_.signalEnded();
+
+    }
+
+
     /** Access the display directly **/
     public TetronimoDisplay directAccessToDisplay() {
         
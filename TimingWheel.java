@@ -0,0 +1,239 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class is a hashed timing wheel: one thread that fires any number
+ * of deadlines, instead of one Timer per deadline.
+ *
+ * Time is cut into slots of slotNanos.  Each slot of the wheel holds a
+ * linked list of Timeouts that fall due in it; a Timeout more than one
+ * turn of the wheel away counts down the turns before it fires.  Timeouts
+ * may be scheduled from any thread: they are pushed on to a lock-free
+ * stack, then moved into the wheel by the wheel's own thread, so the wheel
+ * itself is never shared.
+ *
+ * Expiry runs on the wheel thread, so should only hand work off (e.g. to
+ * a pool) rather than do it.
+ *
+ */
+
+public class TimingWheel {
+
+    /*
+     * Something to be fired when its deadline passes.  A Timeout is its own
+     * node, both on the stack of newly scheduled Timeouts and in its slot's
+     * list, so scheduling it (from any thread) does not allocate anything.
+     * It must not be scheduled again until it has fired.
+     */
+    public static abstract class Timeout {
+
+        /* System.nanoTime() at which this should fire */
+        long deadline_;
+
+        /* Full turns of the wheel still to wait */
+        long rounds_;
+
+        /* Next Timeout in the same slot, or on the stack of newly scheduled ones */
+        Timeout next_;
+
+        /* Get the deadline this was scheduled for */
+        public long getDeadline() {
+
+            return deadline_;
+
+        }
+
+        /* Called on the wheel thread once the deadline has passed */
+        protected abstract void expire(long now);
+
+    }
+
+
+    /* Head of the list for each slot */
+    private Timeout[] slots_;
+
+    /* Number of slots - 1 (the number of slots is a power of two) */
+    private int mask_;
+
+    /* Length of one slot */
+    private long slotNanos_;
+
+    /* Top of the stack of Timeouts waiting to be moved into the wheel */
+    private AtomicReference<Timeout> pending_ = new AtomicReference<Timeout>();
+
+    /* When the wheel started, and how many slots it has passed since */
+    private long startTime_;
+    private long slotCount_;
+
+    /* The thread turning the wheel */
+    private Thread worker_;
+    private volatile boolean running_;
+
+
+    /** CONSTRUCTOR **/
+    public TimingWheel(long slotNanos, int numSlots) {
+
+        /* Round the number of slots up to a power of two */
+        int size = Integer.highestOneBit(Math.max(numSlots - 1, 1)) << 1;
+
+        slots_ = new Timeout[size];
+        mask_ = size - 1;
+        slotNanos_ = slotNanos;
+
+    }
+
+
+    /** METHODS **/
+
+    /* Start the wheel turning on its own thread */
+    public synchronized void start() {
+
+        if (running_) return;
+
+        running_ = true;
+        startTime_ = System.nanoTime();
+        slotCount_ = 0;
+
+        worker_ = new Thread(new Runnable() {
+            public void run() {
+                turnWheel();
+            }
+        }, "TimingWheel");
+        worker_.setDaemon(true);
+        worker_.start();
+
+    }
+
+
+    /*
+     * Stop the wheel, and wait for its thread to finish firing the slot it is on: once this returns,
+     * nothing else fires.  Anything still scheduled never fires.
+     */
+    public synchronized void stop() {
+
+        running_ = false;
+        if (worker_ == null || worker_ == Thread.currentThread()) return;
+
+        LockSupport.unpark(worker_);
+
+        /* Wait out any interrupt, but pass it on */
+        boolean interrupted = false;
+        while (worker_.isAlive()) {
+            try {
+                worker_.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) Thread.currentThread().interrupt();
+
+    }
+
+
+    /* Schedule a Timeout to fire at (or just after) the given System.nanoTime() deadline */
+    public void schedule(Timeout thisTimeout, long deadline) {
+
+        thisTimeout.deadline_ = deadline;
+
+        /* Push it on to the stack: the wheel thread takes the whole stack at once */
+        Timeout top;
+        do {
+            top = pending_.get();
+            thisTimeout.next_ = top;
+        } while (!pending_.compareAndSet(top, thisTimeout));
+
+    }
+
+
+    /* Get the length of one slot */
+    public long getSlotNanos() {
+
+        return slotNanos_;
+
+    }
+
+
+    /* The wheel thread: wait for the end of each slot, then fire what is due in it */
+    private void turnWheel() {
+
+        while (running_) {
+
+            /* Sleep until the end of the current slot */
+            long slotEnd = startTime_ + (slotCount_ + 1) * slotNanos_;
+            long now = System.nanoTime();
+            while (running_ && now < slotEnd) {
+                LockSupport.parkNanos(slotEnd - now);
+                now = System.nanoTime();
+            }
+
+            if (!running_) return;
+
+            transferPending();
+            expireSlot((int) (slotCount_ & mask_), now);
+            slotCount_++;
+
+        }
+
+    }
+
+
+    /* Move the newly scheduled Timeouts into their slots */
+    private void transferPending() {
+
+        Timeout thisTimeout = pending_.getAndSet(null);
+
+        while (thisTimeout != null) {
+
+            Timeout nextPending = thisTimeout.next_;
+
+            /* The slot the deadline falls in, but never one already passed */
+            long dueSlot = (thisTimeout.deadline_ - startTime_) / slotNanos_;
+            if (dueSlot < slotCount_) dueSlot = slotCount_;
+
+            thisTimeout.rounds_ = (dueSlot - slotCount_) / slots_.length;
+
+            int slot = (int) (dueSlot & mask_);
+            thisTimeout.next_ = slots_[slot];
+            slots_[slot] = thisTimeout;
+
+            thisTimeout = nextPending;
+
+        }
+
+    }
+
+
+    /* Fire every Timeout in the slot that is on its last turn; count down the rest */
+    private void expireSlot(int slot, long now) {
+
+        Timeout previous = null;
+        Timeout thisTimeout = slots_[slot];
+
+        while (thisTimeout != null) {
+
+            Timeout next = thisTimeout.next_;
+
+            if (thisTimeout.rounds_ <= 0) {
+                /* Unlink it before firing, as firing may schedule it again */
+                if (previous == null) slots_[slot] = next;
+                else previous.next_ = next;
+                thisTimeout.next_ = null;
+                thisTimeout.expire(now);
+            } else {
+                thisTimeout.rounds_--;
+                previous = thisTimeout;
+            }
+
+            thisTimeout = next;
+
+        }
+
+    }
+
+}
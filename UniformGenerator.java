@@ -0,0 +1,55 @@
+package game;
+
+import java.nio.ByteBuffer;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This PieceGenerator picks every shape at random, with no memory of
+ * what came before (so long droughts and floods are possible).  This is
+ * how pieces have always been dealt in Tetronimoes.
+ *
+ */
+
+public class UniformGenerator extends PieceGenerator {
+
+    /** CONSTRUCTOR **/
+    public UniformGenerator(long seed) {
+
+        super(seed);
+
+    }
+
+
+    /** METHODS **/
+
+    public int getType() {
+
+        return UNIFORM;
+
+    }
+
+
+    protected int rollShape() {
+
+        return random_.nextInt(NUM_SHAPES);
+
+    }
+
+
+    protected void resetShapes() {
+        // Nothing kept
+    }
+
+
+    protected void saveShapes(ByteBuffer snapshot) {
+        // Nothing kept
+    }
+
+
+    protected void restoreShapes(ByteBuffer snapshot) {
+        // Nothing kept
+    }
+
+}
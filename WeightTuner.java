@@ -0,0 +1,479 @@
+package game;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class tunes the weights a BoardEvaluator scores boards with, by a
+ * genetic algorithm.
+ *
+ * Each generation, every weight vector in the population plays the same
+ * seeded headless games with a PlacementBot (no time budget, so every
+ * game plays out the same way each time), up to a set number of pieces,
+ * and scores the mean lines cleared.  The games are split across every
+ * core with a fork-join pool.  The best few go through unchanged; the
+ * rest of the next generation are bred from parents chosen by tournament,
+ * each child the average of its parents weighted by how well they did,
+ * sometimes mutated.  As only the ratios between the weights change which
+ * board scores best, every vector is kept at unit length.
+ *
+ * After every generation a line is added to the checkpoint file holding
+ * the whole population and how each did, so a run that is stopped can
+ * carry on from the last generation finished.  The random draws for
+ * breeding come from the generation number, so it carries on just as it
+ * would have.
+ *
+ *      java game.WeightTuner <checkpoint file> [generations] [population] [games per candidate]
+ *
+ */
+
+public class WeightTuner {
+
+    /* Defaults for the command line */
+    public static final int DEFAULT_GENERATIONS = 20;
+    public static final int DEFAULT_POPULATION = 32;
+    public static final int DEFAULT_GAMES = 8;
+
+    /* Board the games are played on, and the most pieces a game goes on for */
+    public static final int BOARD_WIDTH = 12;
+    public static final int BOARD_HEIGHT = 26;
+    public static final int MAX_PIECES = 500;
+
+    /* Candidates kept unchanged each generation, drawn for each tournament, and the chance a child mutates */
+    private static final int ELITES = 2;
+    private static final int TOURNAMENT_SIZE = 4;
+    private static final double MUTATION_RATE = 0.2;
+
+    /* Last field of every complete checkpoint line */
+    private static final String END_OF_LINE = ";";
+
+    /* Most a mutation moves one weight (before the vector is scaled back to unit length) */
+    private static final double MUTATION_STEP = 0.2;
+
+    /* Seed for the first population and every generation's draws */
+    private static final long TUNER_SEED = 0x5DEECE66DL;
+
+    /* Games below this many are played on one thread rather than split further */
+    private static final int SPLIT_THRESHOLD = 1;
+
+    /* The population, and the mean lines each cleared this generation */
+    private double[][] population_;
+    private double[] fitness_;
+
+    /* Games each candidate plays, and the pool they are played on */
+    private final int games_;
+    private final ForkJoinPool pool_;
+
+    /* Games played, and pieces placed in them */
+    private long gamesPlayed_;
+    private long piecesPlayed_;
+
+
+    /** CONSTRUCTOR: a random first population **/
+    public WeightTuner(int populationSize, int games, ForkJoinPool thisPool) {
+
+        games_ = games;
+        pool_ = thisPool;
+
+        Xoshiro256 random = new Xoshiro256(TUNER_SEED);
+        population_ = new double[populationSize][BoardEvaluator.NUM_WEIGHTS];
+
+        for (int eachCandidate = 0; eachCandidate < populationSize; eachCandidate++) {
+            for (int eachWeight = 0; eachWeight < BoardEvaluator.NUM_WEIGHTS; eachWeight++)
+                population_[eachCandidate][eachWeight] = 2 * nextDouble(random) - 1;
+            normalise(population_[eachCandidate]);
+        }
+
+        fitness_ = new double[populationSize];
+
+    }
+
+
+    /** METHODS **/
+
+    /* Play every candidate's games, and note how each did */
+    public void evaluate(int generation) {
+
+        int numGames = population_.length * games_;
+        double[] lines = new double[numGames];
+        long[] pieces = new long[numGames];
+
+        pool_.invoke(new PlayGames(generation, lines, pieces, 0, numGames));
+
+        for (int eachCandidate = 0; eachCandidate < population_.length; eachCandidate++) {
+
+            double total = 0;
+            for (int eachGame = 0; eachGame < games_; eachGame++) total += lines[eachCandidate * games_ + eachGame];
+            fitness_[eachCandidate] = total / games_;
+
+        }
+
+        gamesPlayed_ += numGames;
+        for (int eachGame = 0; eachGame < numGames; eachGame++) piecesPlayed_ += pieces[eachGame];
+
+        sortByFitness();
+
+    }
+
+
+    /*
+     * Play a range of games (game n is candidate n / games_ playing seed n % games_ of the
+     * generation): split in half until small enough to play on this thread.
+     */
+    private class PlayGames extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private int generation_;
+        private double[] lines_;
+        private long[] pieces_;
+        private int from_, to_;
+
+        PlayGames(int generation, double[] lines, long[] pieces, int from, int to) {
+
+            generation_ = generation;
+            lines_ = lines;
+            pieces_ = pieces;
+            from_ = from;
+            to_ = to;
+
+        }
+
+        protected void compute() {
+
+            if (to_ - from_ <= SPLIT_THRESHOLD) {
+
+                for (int eachGame = from_; eachGame < to_; eachGame++) {
+
+                    /* Every candidate plays the same games in a generation, so they compare */
+                    long seed = (long) generation_ * games_ + eachGame % games_;
+                    PlacementBot bot = new PlacementBot(new BoardEvaluator(population_[eachGame / games_]), pool_);
+
+                    lines_[eachGame] = playGame(bot, seed);
+                    pieces_[eachGame] = bot.getDecisions();
+
+                }
+
+                return;
+
+            }
+
+            int middle = (from_ + to_) >>> 1;
+            invokeAll(new PlayGames(generation_, lines_, pieces_, from_, middle),
+                    new PlayGames(generation_, lines_, pieces_, middle, to_));
+
+        }
+
+    }
+
+
+    /* Play one seeded headless game with a bot, up to MAX_PIECES pieces: returns the lines cleared */
+    public static int playGame(PlacementBot thisBot, long seed) {
+
+        Game thisGame = new Game(BOARD_WIDTH, BOARD_HEIGHT, PieceGenerator.create(PieceGenerator.BAG, seed));
+
+        /* No budget, so the lookahead is never cut short and the game always plays out the same */
+        thisBot.setTimeBudget(Long.MAX_VALUE / 2);
+
+        while (thisBot.getDecisions() < MAX_PIECES)
+            if (!thisGame.step(thisBot.nextInputs(thisGame) | GameInput.GRAVITY)) break;
+
+        return thisGame.getGameScore().getCompletedLines();
+
+    }
+
+
+    /* Breed the next generation from this one (which evaluate() left sorted, best first) */
+    public void breed(int generation) {
+
+        Xoshiro256 random = new Xoshiro256(TUNER_SEED + generation * 0x9E3779B97F4A7C15L);
+        double[][] next = new double[population_.length][];
+
+        for (int eachCandidate = 0; eachCandidate < next.length; eachCandidate++) {
+
+            if (eachCandidate < ELITES) {
+                next[eachCandidate] = population_[eachCandidate].clone();
+                continue;
+            }
+
+            int first = tournament(random);
+            int second = tournament(random);
+
+            /* The parents' average, weighted by how well each did */
+            double total = fitness_[first] + fitness_[second];
+            double share = (total > 0) ? fitness_[first] / total : 0.5;
+
+            double[] child = new double[BoardEvaluator.NUM_WEIGHTS];
+            for (int eachWeight = 0; eachWeight < child.length; eachWeight++)
+                child[eachWeight] = share * population_[first][eachWeight] + (1 - share) * population_[second][eachWeight];
+
+            if (nextDouble(random) < MUTATION_RATE)
+                child[random.nextInt(child.length)] += (2 * nextDouble(random) - 1) * MUTATION_STEP;
+
+            normalise(child);
+            next[eachCandidate] = child;
+
+        }
+
+        population_ = next;
+        Arrays.fill(fitness_, 0);
+
+    }
+
+
+    /* Pick the best of a few candidates drawn at random */
+    private int tournament(Xoshiro256 random) {
+
+        int best = random.nextInt(population_.length);
+
+        for (int eachDraw = 1; eachDraw < TOURNAMENT_SIZE; eachDraw++) {
+            int drawn = random.nextInt(population_.length);
+            if (fitness_[drawn] > fitness_[best]) best = drawn;
+        }
+
+        return best;
+
+    }
+
+
+    /* Sort the population by fitness, best first */
+    private void sortByFitness() {
+
+        Integer[] order = new Integer[population_.length];
+        for (int eachCandidate = 0; eachCandidate < order.length; eachCandidate++) order[eachCandidate] = eachCandidate;
+
+        Arrays.sort(order, (first, second) -> Double.compare(fitness_[second], fitness_[first]));
+
+        double[][] population = new double[order.length][];
+        double[] fitness = new double[order.length];
+
+        for (int eachCandidate = 0; eachCandidate < order.length; eachCandidate++) {
+            population[eachCandidate] = population_[order[eachCandidate]];
+            fitness[eachCandidate] = fitness_[order[eachCandidate]];
+        }
+
+        population_ = population;
+        fitness_ = fitness;
+
+    }
+
+
+    /*
+     * Add a generation to the checkpoint file: a line with the generation number, the number of
+     * candidates, then each candidate's weights and mean lines as "w0,w1,w2,w3:lines", best
+     * first, and END_OF_LINE.  The line starts with its newline, so one cut short by a stopped
+     * run is ended rather than run on to; without its END_OF_LINE it is never taken up.
+     */
+    public void writeCheckpoint(Path checkpoint, int generation) throws IOException {
+
+        StringBuilder line = new StringBuilder();
+        line.append('\n').append(generation).append(' ').append(population_.length);
+
+        for (int eachCandidate = 0; eachCandidate < population_.length; eachCandidate++) {
+
+            line.append(' ');
+            for (int eachWeight = 0; eachWeight < BoardEvaluator.NUM_WEIGHTS; eachWeight++) {
+                if (eachWeight > 0) line.append(',');
+                line.append(population_[eachCandidate][eachWeight]);
+            }
+            line.append(':').append(fitness_[eachCandidate]);
+
+        }
+
+        line.append(' ').append(END_OF_LINE);
+
+        Files.write(checkpoint, line.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+
+    }
+
+
+    /*
+     * Take up the last generation finished in a checkpoint file: a line cut short by the run
+     * being stopped (one without END_OF_LINE, or without as many candidates as it says) is passed
+     * over.  Returns that generation, or -1 if there is none.
+     */
+    public int readCheckpoint(Path checkpoint) throws IOException {
+
+        if (!Files.exists(checkpoint)) return -1;
+
+        List<String> lines = Files.readAllLines(checkpoint, StandardCharsets.UTF_8);
+
+        for (int eachLine = lines.size() - 1; eachLine >= 0; eachLine--) {
+
+            try {
+
+                String[] fields = lines.get(eachLine).trim().split(" ");
+                int generation = Integer.parseInt(fields[0]);
+                int numCandidates = Integer.parseInt(fields[1]);
+
+                if (numCandidates < 1 || fields.length != numCandidates + 3
+                        || !fields[fields.length - 1].equals(END_OF_LINE)) continue;
+
+                double[][] population = new double[numCandidates][BoardEvaluator.NUM_WEIGHTS];
+                double[] fitness = new double[numCandidates];
+
+                for (int eachCandidate = 0; eachCandidate < numCandidates; eachCandidate++) {
+
+                    String[] candidate = fields[eachCandidate + 2].split(":");
+                    String[] weights = candidate[0].split(",");
+                    if (weights.length != BoardEvaluator.NUM_WEIGHTS || candidate.length != 2)
+                        throw new NumberFormatException(fields[eachCandidate + 2]);
+
+                    for (int eachWeight = 0; eachWeight < BoardEvaluator.NUM_WEIGHTS; eachWeight++)
+                        population[eachCandidate][eachWeight] = Double.parseDouble(weights[eachWeight]);
+                    fitness[eachCandidate] = Double.parseDouble(candidate[1]);
+
+                }
+
+                population_ = population;
+                fitness_ = fitness;
+                return generation;
+
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                // Cut short: try the line before
+            }
+
+        }
+
+        return -1;
+
+    }
+
+
+    /* Get the best weights found (after evaluate() or readCheckpoint()) */
+    public double[] getBestWeights() {
+
+        return population_[0].clone();
+
+    }
+
+
+    /* Get the mean lines the best candidate cleared */
+    public double getBestFitness() {
+
+        return fitness_[0];
+
+    }
+
+
+    /* Get the mean lines the whole population cleared */
+    public double getMeanFitness() {
+
+        double total = 0;
+        for (int eachCandidate = 0; eachCandidate < fitness_.length; eachCandidate++) total += fitness_[eachCandidate];
+
+        return total / fitness_.length;
+
+    }
+
+
+    /* Get the number of candidates */
+    public int getPopulationSize() {
+
+        return population_.length;
+
+    }
+
+
+    /* Get the games played so far */
+    public long getGamesPlayed() {
+
+        return gamesPlayed_;
+
+    }
+
+
+    /* Get the pieces placed in the games played so far */
+    public long getPiecesPlayed() {
+
+        return piecesPlayed_;
+
+    }
+
+
+    /* Scale a weight vector to unit length */
+    private static void normalise(double[] weights) {
+
+        double length = 0;
+        for (int eachWeight = 0; eachWeight < weights.length; eachWeight++) length += weights[eachWeight] * weights[eachWeight];
+
+        length = Math.sqrt(length);
+        if (length == 0) return;
+
+        for (int eachWeight = 0; eachWeight < weights.length; eachWeight++) weights[eachWeight] /= length;
+
+    }
+
+
+    /* Draw a double in [0, 1) */
+    private static double nextDouble(Xoshiro256 random) {
+
+        return (random.nextLong() >>> 11) * 0x1.0p-53;
+
+    }
+
+
+    /* Tune from scratch, or carry on from the checkpoint file if there is one, reporting each generation */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 1) {
+            System.out.println("Usage: java game.WeightTuner <checkpoint file> [generations] [population] [games per candidate]");
+            return;
+        }
+
+        Path checkpoint = Paths.get(args[0]);
+        int generations = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_GENERATIONS;
+        int populationSize = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_POPULATION;
+        int games = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_GAMES;
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        try {
+
+            WeightTuner tuner = new WeightTuner(populationSize, games, pool);
+
+            /* Carry on from the last generation finished */
+            int finished = tuner.readCheckpoint(checkpoint);
+            if (finished >= 0) {
+                System.out.format("Carrying on from generation %d: best %.1f lines with %s%n", finished,
+                        tuner.getBestFitness(), new BoardEvaluator(tuner.getBestWeights()));
+                tuner.breed(finished);
+            }
+
+            for (int generation = finished + 1; generation < generations; generation++) {
+
+                long startTime = System.nanoTime();
+                long startPieces = tuner.getPiecesPlayed();
+                tuner.evaluate(generation);
+                double seconds = (System.nanoTime() - startTime) / 1e9;
+
+                tuner.writeCheckpoint(checkpoint, generation);
+
+                System.out.format("Generation %d: best %.1f lines, mean %.1f, in %.1fs (%.1f games/s, %.0f pieces/s): %s%n",
+                        generation, tuner.getBestFitness(), tuner.getMeanFitness(), seconds,
+                        tuner.getPopulationSize() * games / seconds, (tuner.getPiecesPlayed() - startPieces) / seconds,
+                        new BoardEvaluator(tuner.getBestWeights()));
+
+                tuner.breed(generation);
+
+            }
+
+        } finally {
+            pool.shutdown();
+        }
+
+    }
+
+}
@@ -0,0 +1,110 @@
+package game;
+
+import java.nio.ByteBuffer;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class is a small, fast random number generator (xoshiro256**).
+ *
+ * Unlike java.util.Random it is not synchronized and never allocates, and
+ * the same seed always gives the same numbers, on any machine.  The seed
+ * is spread over the four words of state with SplitMix64, as the authors
+ * of xoshiro recommend.  It is not safe to share between threads: each
+ * game has its own.
+ *
+ */
+
+public class Xoshiro256 {
+
+    /* The generator's state */
+    private long s0_, s1_, s2_, s3_;
+
+
+    /** CONSTRUCTOR **/
+    public Xoshiro256(long seed) {
+
+        setSeed(seed);
+
+    }
+
+
+    /** METHODS **/
+
+    /* Start again from the given seed */
+    public void setSeed(long seed) {
+
+        s0_ = splitMix64(seed += 0x9E3779B97F4A7C15L);
+        s1_ = splitMix64(seed += 0x9E3779B97F4A7C15L);
+        s2_ = splitMix64(seed += 0x9E3779B97F4A7C15L);
+        s3_ = splitMix64(seed += 0x9E3779B97F4A7C15L);
+
+    }
+
+
+    /* Get the next 64 random bits */
+    public long nextLong() {
+
+        long result = Long.rotateLeft(s1_ * 5, 7) * 9;
+        long t = s1_ << 17;
+
+        s2_ ^= s0_;
+        s3_ ^= s1_;
+        s1_ ^= s2_;
+        s0_ ^= s3_;
+        s2_ ^= t;
+        s3_ = Long.rotateLeft(s3_, 45);
+
+        return result;
+
+    }
+
+
+    /* Get a random int from 0 to bound - 1 (bound must be positive) */
+    public int nextInt(int bound) {
+
+        /* Multiply the top 32 bits by the bound, rejecting the few values that would bias the result */
+        long r = (nextLong() >>> 32) * bound;
+        if ((r & 0xFFFFFFFFL) < bound) {
+            long threshold = (0x100000000L - bound) % bound;
+            while ((r & 0xFFFFFFFFL) < threshold) r = (nextLong() >>> 32) * bound;
+        }
+
+        return (int) (r >>> 32);
+
+    }
+
+
+    /* Write the state of the generator to a snapshot */
+    public void saveState(ByteBuffer snapshot) {
+
+        snapshot.putLong(s0_);
+        snapshot.putLong(s1_);
+        snapshot.putLong(s2_);
+        snapshot.putLong(s3_);
+
+    }
+
+
+    /* Take on the state written by saveState() */
+    public void restoreState(ByteBuffer snapshot) {
+
+        s0_ = snapshot.getLong();
+        s1_ = snapshot.getLong();
+        s2_ = snapshot.getLong();
+        s3_ = snapshot.getLong();
+
+    }
+
+
+    /* Scramble a 64 bit value: the SplitMix64 finaliser, also handy for building hash keys */
+    public static long splitMix64(long z) {
+
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+
+    }
+
+}
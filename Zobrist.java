@@ -0,0 +1,107 @@
+package game;
+
+/***
+ *
+ * @author Andrew Connell
+ *
+ * This class holds the keys for Zobrist hashing of game states.
+ *
+ * Every occupied cell, the falling piece (shape, orientation and base
+ * position) and the next piece each have a random 64-bit key, and the
+ * hash of a state is all of its keys XORed together.  Each board size has
+ * a key too, for anything keyed on states from boards of different sizes
+ * (the cell keys don't depend on the size).  XOR undoes itself,
+ * so the hash is kept up to date as the state changes by XORing in the
+ * key of whatever changed, rather than by hashing the whole state again.
+ *
+ * The keys come from SplitMix64 over fixed salts, not from a generator
+ * seeded at start up, so the same state has the same hash in every run,
+ * on every machine, and on Board and ImmutableBoard alike: hashes can be
+ * stored, and compared between simulations to catch a desync.
+ *
+ */
+
+public class Zobrist {
+
+    /* Salts for each kind of key, so no two kinds ever share a key */
+    private static final long CELL_SALT = 0x2545F4914F6CDD1DL;
+    private static final long PIECE_SALT = 0x6A09E667F3BCC909L;
+    private static final long NEXT_SALT = 0xBB67AE8584CAA73BL;
+    private static final long SIZE_SALT = 0x3C6EF372FE94F82BL;
+
+    /* Spreads consecutive indexes apart before they are mixed */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+
+    /** REDUNDANT CONSTRUCTOR: static methods only **/
+    private Zobrist() {
+        // Redundant
+    }
+
+
+    /** METHODS **/
+
+    /* Get the key for a block on the cell at (xPos, yPos) */
+    public static long cellKey(int xPos, int yPos) {
+
+        return Xoshiro256.splitMix64(CELL_SALT + (((long) yPos << 16) + xPos) * GOLDEN_GAMMA);
+
+    }
+
+
+    /* Get the keys for every cell of a board, indexed [y * width + x] */
+    public static long[] cellKeys(int width, int height) {
+
+        long[] keys = new long[width * height];
+
+        for (int eachRow = 0; eachRow < height; eachRow++)
+            for (int eachColumn = 0; eachColumn < width; eachColumn++)
+                keys[eachRow * width + eachColumn] = cellKey(eachColumn, eachRow);
+
+        return keys;
+
+    }
+
+
+    /* Get the key for the falling piece: its shape, orientation and base position */
+    public static long pieceKey(Shape thisShape, int orientation, int baseX, int baseY) {
+
+        long index = ((((long) thisShape.ordinal() << 8) + orientation) << 16 | (baseY & 0xFFFF)) << 16 | (baseX & 0xFFFF);
+
+        return Xoshiro256.splitMix64(PIECE_SALT + index * GOLDEN_GAMMA);
+
+    }
+
+
+    /* Get the key for the next piece */
+    public static long nextPieceKey(Shape thisShape) {
+
+        return Xoshiro256.splitMix64(NEXT_SALT + (thisShape.ordinal() + 1) * GOLDEN_GAMMA);
+
+    }
+
+
+    /* Get the key for a board's size */
+    public static long sizeKey(int width, int height) {
+
+        return Xoshiro256.splitMix64(SIZE_SALT + (((long) height << 16) + width) * GOLDEN_GAMMA);
+
+    }
+
+
+    /*
+     * XOR together the keys of every block in one packed word of a row: bit n of rowBits is
+     * the cell whose key is keys[firstCell + n]
+     */
+    public static long hashRow(long[] keys, int firstCell, long rowBits) {
+
+        long hash = 0;
+
+        for (long eachBit = rowBits; eachBit != 0; eachBit &= eachBit - 1)
+            hash ^= keys[firstCell + Long.numberOfTrailingZeros(eachBit)];
+
+        return hash;
+
+    }
+
+}